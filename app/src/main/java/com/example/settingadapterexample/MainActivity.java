@@ -1,14 +1,17 @@
 package com.example.settingadapterexample;
 
+import android.content.Context;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
 import com.example.settingadapter.model.Setting;
+import com.example.settingadapter.store.SettingSchema;
 import com.example.settingadapter.ui.SettingItemAdapter;
 import com.example.settingadapter.ui.SettingItemFragment;
 
-import java.util.Arrays;
+import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Locale;
 
@@ -21,27 +24,11 @@ public class MainActivity extends AppCompatActivity implements SettingItemAdapte
 
 
         SettingItemFragment settingItemFragment = (SettingItemFragment) getSupportFragmentManager().findFragmentById(R.id.main_fragment_setting_item);
-        settingItemFragment.setSettingList(buildSettings());
         settingItemFragment.setOnSettingChangeListener(this);
+        new LoadSettingsTask(this, settingItemFragment).execute();
 
     }
 
-
-    private java.util.List<Setting> buildSettings() {
-        List<Setting> results = new java.util.ArrayList<>();
-        List<String> dayItems = Arrays.asList("Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday");
-
-        results.add(Setting.Builder.with(this).setType(Setting.HEADER).setTitle("This is my time header").build());
-        results.add(Setting.Builder.with(this).setType(Setting.TIME).setKey("NEW_TIME").setTitle("Pick a time:").build());
-        results.add(Setting.Builder.with(this).setType(Setting.TIME).setKey("EXISTING_TIME").setTitle("Pick a new time:").setValue("15:30").build());
-        results.add(Setting.Builder.with(this).setType(Setting.HEADER).setTitle("This is my second header").build());
-        results.add(Setting.Builder.with(this).setType(Setting.LIST).setKey("DAY_OF_WEEK").setTitle("Pick a day: ").setOptions(dayItems).build());
-        results.add(Setting.Builder.with(this).setType(Setting.INPUT).setKey("NAME_INPUT").setTitle("Enter name: ").build());
-        results.add(Setting.Builder.with(this).setType(Setting.FOOTER).setTitle("This is my footer").build());
-
-        return results;
-    }
-
     @Override
     public void settingItemChanged(int type, String key, String newValue) {
         Toast.makeText(this,
@@ -49,4 +36,33 @@ public class MainActivity extends AppCompatActivity implements SettingItemAdapte
                 Toast.LENGTH_LONG)
                 .show();
     }
+
+
+    /**
+     * Loads the settings declared in res/xml/settings.xml off the main thread.
+     * They are parsed on the first launch of each app version only, later launches map the compiled snapshot.
+     */
+    private static class LoadSettingsTask extends AsyncTask<Void, Void, List<Setting>> {
+
+        private final Context context;
+        private final WeakReference<SettingItemFragment> fragment;
+
+        LoadSettingsTask(Context context, SettingItemFragment fragment) {
+            this.context = context.getApplicationContext();
+            this.fragment = new WeakReference<>(fragment);
+        }
+
+        @Override
+        protected List<Setting> doInBackground(Void... params) {
+            return SettingSchema.loadXml(context, R.xml.settings);
+        }
+
+        @Override
+        protected void onPostExecute(List<Setting> settings) {
+            SettingItemFragment settingItemFragment = fragment.get();
+            if (settingItemFragment != null) {
+                settingItemFragment.setSettingList(settings);
+            }
+        }
+    }
 }
@@ -0,0 +1,138 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.model;
+
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parceling and spilling of {@link SettingList}, executed on an Android device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SettingListParcelTest {
+
+    private static final long DELETE_TIMEOUT_MILLIS = 2000;
+
+    private File spillFile;
+    private OptionTable days;
+    private List<Setting> settingList;
+
+    @Before
+    public void setUp() throws Exception {
+        spillFile = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "SettingListParcelTest");
+        days = OptionTable.of("Sunday", "Monday");
+
+        settingList = new ArrayList<>();
+        settingList.add(new Setting(Setting.HEADER, null, "Header", "", new ArrayList<String>()));
+        settingList.add(new Setting(Setting.SWITCH, "SWITCH", "Switch", "1", new ArrayList<String>()));
+        settingList.add(new Setting(Setting.LIST, "DAY", "Day", "Monday", days));
+        settingList.add(new Setting(Setting.LIST, "OTHER_DAY", "Other day", "Sunday", days));
+        settingList.add(new Setting(Setting.LIST, "OWN", "Own options", "b", new ArrayList<>(Arrays.asList("a", "b"))));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        assertTrue(!spillFile.exists() || spillFile.delete());
+    }
+
+    private static List<Setting> roundTrip(SettingList written) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            written.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return SettingList.CREATOR.createFromParcel(parcel).getSettings();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private void assertSameSettings(List<Setting> actual) {
+        assertEquals(settingList.size(), actual.size());
+        for (int i = 0; i < settingList.size(); i++) {
+            Setting expected = settingList.get(i);
+            assertEquals(expected.getType(), actual.get(i).getType());
+            assertEquals(expected.getKey(), actual.get(i).getKey());
+            assertEquals(expected.getTitle(), actual.get(i).getTitle());
+            assertEquals(expected.getValue(), actual.get(i).getValue());
+            assertEquals(expected.getOptions(), actual.get(i).getOptions());
+        }
+    }
+
+    @Test
+    public void smallListsAreParceledInline() throws Exception {
+        List<Setting> restored = roundTrip(new SettingList(settingList, spillFile));
+
+        assertSameSettings(restored);
+        assertSame(days, restored.get(2).getOptionTable());
+        assertSame(days, restored.get(3).getOptionTable());
+        assertNull(restored.get(4).getOptionTable());
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void listsWithoutSpillFileAreNeverSpilled() throws Exception {
+        assertSameSettings(roundTrip(new SettingList(settingList, null, 0)));
+    }
+
+    @Test
+    public void largeListsAreSpilledAndDeletedOnRestore() throws Exception {
+        List<Setting> restored = roundTrip(new SettingList(settingList, spillFile, 0));
+
+        assertSameSettings(restored);
+        assertSame(days, restored.get(2).getOptionTable());
+        restored.add(new Setting(Setting.FOOTER, null, "Footer", "", new ArrayList<String>()));
+
+        long deadline = SystemClock.uptimeMillis() + DELETE_TIMEOUT_MILLIS;
+        while (spillFile.exists() && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(10);
+        }
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void deleteSpillRemovesStaleFiles() throws Exception {
+        assertTrue(spillFile.createNewFile());
+        SettingList.deleteSpill(spillFile);
+
+        long deadline = SystemClock.uptimeMillis() + DELETE_TIMEOUT_MILLIS;
+        while (spillFile.exists() && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(10);
+        }
+        assertFalse(spillFile.exists());
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.content.Context;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.EditText;
+
+import com.example.settingadapter.R;
+import com.example.settingadapter.model.Setting;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Binding behaviour of {@link SettingItemAdapter}, executed on an Android device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SettingItemAdapterBindTest {
+
+    private static final int BINDS = 500;
+
+    private Context context;
+    private RecyclerView recyclerView;
+    private SettingItemAdapter adapter;
+    private int changeCount;
+    private int changedIndex;
+
+    private final SettingItemAdapter.OnSettingActionListener listener = new SettingItemAdapter.OnSettingActionListener() {
+        @Override
+        public void settingItemClick(int type, int index) {
+        }
+
+        @Override
+        public void settingItemChanged(int type, int index, Object newValue) {
+            changeCount++;
+            changedIndex = index;
+        }
+
+        @Override
+        public void settingItemEditFinished(int type, int index) {
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getTargetContext();
+        changeCount = 0;
+        changedIndex = -1;
+
+        final List<Setting> settings = new ArrayList<>();
+        settings.add(new Setting(Setting.INPUT, "NAME_INPUT", "Name", "", null));
+        settings.add(new Setting(Setting.SWITCH, "ENABLED", "Enabled", "1", null));
+        settings.add(new Setting(Setting.LIST, "DAY", "Day", "Monday", null));
+        settings.add(new Setting(Setting.TIME, "EXISTING_TIME", "Time", "15:30", null));
+        // no value yet, shown empty
+        settings.add(new Setting(Setting.TIME, "NEW_TIME", "New time", "", null));
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                recyclerView = new RecyclerView(context);
+                recyclerView.setLayoutManager(new LinearLayoutManager(context));
+                // rebind changed rows in place instead of through change animations
+                recyclerView.setItemAnimator(null);
+                adapter = new SettingItemAdapter(context, settings, listener);
+                recyclerView.setAdapter(adapter);
+                layout();
+            }
+        });
+    }
+
+    private void layout() {
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 1080, 1920);
+    }
+
+    @SuppressWarnings("deprecation")
+    private int countAllocations(RecyclerView.ViewHolder holder, int position, int binds) {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < binds; i++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+
+    @Test
+    public void recycledInputFiresOneCallback() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    adapter.notifyItemChanged(0);
+                    layout();
+                }
+
+                RecyclerView.ViewHolder holder = recyclerView.findViewHolderForAdapterPosition(0);
+                EditText editText = (EditText) holder.itemView.findViewById(R.id.recycler_setting_input_editText);
+                editText.setText("Michael");
+            }
+        });
+
+        assertEquals(1, changeCount);
+        assertEquals(0, changedIndex);
+    }
+
+    @Test
+    public void bindDoesNotFireCallbacks() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int position = 0; position < adapter.getItemCount(); position++) {
+                    adapter.onBindViewHolder(recyclerView.findViewHolderForAdapterPosition(position), position);
+                }
+            }
+        });
+
+        assertEquals(0, changeCount);
+    }
+
+    @Test
+    public void rebindDoesNotAllocate() throws Exception {
+        final int[] allocations = new int[adapter.getItemCount()];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int position = 0; position < adapter.getItemCount(); position++) {
+                    RecyclerView.ViewHolder holder = recyclerView.findViewHolderForAdapterPosition(position);
+                    // the first bind may cache rendered values, later binds must not allocate at all
+                    countAllocations(holder, position, 1);
+                    allocations[position] = countAllocations(holder, position, BINDS);
+                }
+            }
+        });
+
+        for (int position = 0; position < allocations.length; position++) {
+            assertEquals("allocations while rebinding position " + position, 0, allocations[position]);
+        }
+    }
+}
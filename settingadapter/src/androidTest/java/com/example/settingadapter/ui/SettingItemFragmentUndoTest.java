@@ -0,0 +1,134 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.app.AppCompatActivity;
+
+import com.example.settingadapter.TimeCodec;
+import com.example.settingadapter.model.Setting;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Undo of values picked in the dialogs of {@link SettingItemFragment}, executed on an Android device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SettingItemFragmentUndoTest {
+
+    private Instrumentation instrumentation;
+    private AppCompatActivity activity;
+    private SettingItemFragment fragment;
+    private Setting time;
+    private Setting list;
+    private boolean undone;
+
+    @Before
+    public void setUp() throws Exception {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), AppCompatActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        activity = (AppCompatActivity) instrumentation.startActivitySync(intent);
+
+        time = new Setting(Setting.TIME, "TIME", "Time", "08:00", new ArrayList<String>());
+        list = new Setting(Setting.LIST, "LIST", "List", "One", Arrays.asList("One", "Two"));
+        final List<Setting> settings = new ArrayList<>();
+        settings.add(time);
+        settings.add(list);
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                fragment = new SettingItemFragment();
+                fragment.setSettingList(settings);
+                activity.getSupportFragmentManager().beginTransaction().add(fragment, "settings").commitNow();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        activity.finish();
+    }
+
+    private void pickAndUndo(final Setting setting, final Object value) {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                fragment.pickedValue(setting, value);
+            }
+        });
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                undone = fragment.undo();
+            }
+        });
+    }
+
+    @Test
+    public void undoRevertsPickedTime() throws Exception {
+        pickAndUndo(time, TimeCodec.pack(21, 15));
+
+        assertTrue(undone);
+        assertEquals("08:00", time.getValue());
+        assertFalse(fragment.canUndo());
+    }
+
+    @Test
+    public void undoRevertsSelectedOption() throws Exception {
+        pickAndUndo(list, "Two");
+
+        assertTrue(undone);
+        assertEquals("One", list.getValue());
+        assertFalse(fragment.canUndo());
+    }
+
+    @Test
+    public void pickedValueIsApplied() throws Exception {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                fragment.pickedValue(time, TimeCodec.pack(21, 15));
+                fragment.pickedValue(list, "Two");
+            }
+        });
+
+        assertEquals("21:15", time.getValue());
+        assertEquals("Two", list.getValue());
+        assertTrue(fragment.canUndo());
+    }
+}
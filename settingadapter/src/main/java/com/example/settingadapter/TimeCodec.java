@@ -0,0 +1,179 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter;
+
+import java.util.Calendar;
+
+/**
+ * Allocation free codec for TIME setting values.
+ * Times are packed into an int holding the minutes of the day (0 - 1439).
+ * Setting values are stored as <c>HH:mm</c> and displayed as <c>hh:mm a</c>,
+ * both formats come from tables filled once per minute of the day.
+ */
+public final class TimeCodec {
+
+    // Constants
+    public static final int INVALID = -1;
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final String[] VALUES = new String[MINUTES_PER_DAY];
+    private static final String[] DISPLAYS = new String[MINUTES_PER_DAY];
+
+    // Constructors
+
+    private TimeCodec() { }
+
+    // Private Methods
+
+    private static void appendTwoDigits(StringBuilder builder, int value) {
+        builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    // Public Methods
+
+    /**
+     * Pack an hour and minute.
+     * @param hour hour of the day, 0 - 23
+     * @param minute minute of the hour, 0 - 59
+     * @return minutes of the day or {@link #INVALID}
+     */
+    public static int pack(int hour, int minute) {
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59)
+            return INVALID;
+
+        return hour * 60 + minute;
+    }
+
+    /**
+     * @param time packed time
+     * @return hour of the day, 0 - 23
+     */
+    public static int hour(int time) {
+        return time / 60;
+    }
+
+    /**
+     * @param time packed time
+     * @return minute of the hour, 0 - 59
+     */
+    public static int minute(int time) {
+        return time % 60;
+    }
+
+    /**
+     * Parse a setting value with format <c>H:m</c>, <c>HH:mm</c> or anything in between.
+     * @param value setting value
+     * @return packed time or {@link #INVALID}
+     */
+    public static int parse(CharSequence value) {
+        if (value == null)
+            return INVALID;
+
+        int length = value.length();
+        int hour = 0;
+        int minute = 0;
+        int digits = 0;
+        int i = 0;
+
+        for (; i < length && value.charAt(i) != ':'; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9' || ++digits > 2)
+                return INVALID;
+            hour = hour * 10 + (c - '0');
+        }
+        if (digits == 0 || i >= length)
+            return INVALID;
+
+        digits = 0;
+        for (i++; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9' || ++digits > 2)
+                return INVALID;
+            minute = minute * 10 + (c - '0');
+        }
+        if (digits == 0)
+            return INVALID;
+
+        return pack(hour, minute);
+    }
+
+    /**
+     * Parse a setting value, falling back to the current time like
+     * {@link Utils#getTimeFromSetting(String)} does for invalid values.
+     * @param value setting value
+     * @return packed time
+     */
+    public static int parseOrNow(CharSequence value) {
+        int time = parse(value);
+        if (time != INVALID)
+            return time;
+
+        Calendar calendar = Calendar.getInstance();
+        return pack(calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE));
+    }
+
+    /**
+     * Format a packed time as a setting value.
+     * @param time packed time
+     * @return String value with format <c>HH:mm</c>, empty for {@link #INVALID} or out of range times
+     */
+    public static String format(int time) {
+        if (time < 0 || time >= MINUTES_PER_DAY)
+            return "";
+
+        String value = VALUES[time];
+        if (value == null) {
+            StringBuilder builder = new StringBuilder(5);
+            appendTwoDigits(builder, hour(time));
+            builder.append(':');
+            appendTwoDigits(builder, minute(time));
+            value = builder.toString();
+            VALUES[time] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Format a packed time for display.
+     * @param time packed time
+     * @return String value with format <c>hh:mm a</c>, empty for {@link #INVALID} or out of range times
+     */
+    public static String display(int time) {
+        if (time < 0 || time >= MINUTES_PER_DAY)
+            return "";
+
+        String display = DISPLAYS[time];
+        if (display == null) {
+            int hour = hour(time) % 12;
+            StringBuilder builder = new StringBuilder(8);
+            appendTwoDigits(builder, hour == 0 ? 12 : hour);
+            builder.append(':');
+            appendTwoDigits(builder, minute(time));
+            builder.append(hour(time) < 12 ? " AM" : " PM");
+            display = builder.toString();
+            DISPLAYS[time] = display;
+        }
+        return display;
+    }
+}
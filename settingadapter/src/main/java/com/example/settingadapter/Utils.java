@@ -61,13 +61,22 @@ public class Utils {
         if (object instanceof Integer)
             return String.format(Locale.getDefault(), "%d", (Integer) object);
 
+        if (object instanceof Long)
+            return Long.toString((Long) object);
+
         return "";
     }
 
 
     // Date Helpers
+
+    /**
+     * Get the hour of the day.
+     * @param date java.util.Date
+     * @return hour in 24 hour format, 0 - 23
+     */
     public static int getHour(Date date) {
-        return getCalendar(date).get(Calendar.HOUR);
+        return getCalendar(date).get(Calendar.HOUR_OF_DAY);
     }
 
     public static int getMinute(Date date) {
@@ -76,6 +85,7 @@ public class Utils {
 
     /**
      * Parse string into date with time.
+     * Prefer {@link TimeCodec#parse(CharSequence)} on hot paths, this allocates a formatter per call.
      * @param setting setting value with format <c>HH:mm</c>
      * @return java.util.Date
      */
@@ -90,6 +100,7 @@ public class Utils {
 
     /**
      * Format date into string for time value.
+     * Prefer {@link TimeCodec#display(int)} on hot paths, this allocates a formatter per call.
      * @param date java.util.Date
      * @return String value with format <c>hh:mm a</c>
      */
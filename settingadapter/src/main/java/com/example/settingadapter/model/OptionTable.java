@@ -0,0 +1,186 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.model;
+
+import android.support.annotation.NonNull;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable, array backed list of options for LIST settings.
+ * Tables are interned, settings with the same options share one table
+ * which can also be looked up by its id. The registry only holds tables weakly,
+ * a table no setting uses any more is collected and interned again when needed.
+ */
+public final class OptionTable extends AbstractList<String> implements RandomAccess {
+
+    // Private Variables
+    private static final Map<OptionTable, TableReference> interned = new WeakHashMap<>();
+    private static final Map<Integer, TableReference> byId = new HashMap<>();
+    private static final ReferenceQueue<OptionTable> collected = new ReferenceQueue<>();
+    private static int nextId = 0;
+
+    private final String[] options;
+    private final int hash;
+    private int id = -1;
+
+    // Constructors
+
+    private OptionTable(String[] options) {
+        this.options = options;
+        this.hash = Arrays.hashCode(options);
+    }
+
+    // Public Methods
+
+    /**
+     * Get the shared table holding the given options.
+     * @param options options for user to select
+     * @return interned {@link OptionTable}
+     */
+    public static OptionTable of(@NonNull List<String> options) {
+        if (options instanceof OptionTable)
+            return (OptionTable) options;
+
+        return intern(options.toArray(new String[options.size()]));
+    }
+
+    /**
+     * Get the shared table holding the given options.
+     * @param options options for user to select
+     * @return interned {@link OptionTable}
+     */
+    public static OptionTable of(@NonNull String... options) {
+        return intern(options.clone());
+    }
+
+    private static OptionTable intern(String[] options) {
+        OptionTable table = new OptionTable(options);
+        synchronized (interned) {
+            purge();
+            TableReference reference = interned.get(table);
+            OptionTable existing = reference == null ? null : reference.get();
+            if (existing != null)
+                return existing;
+
+            table.id = nextId++;
+            reference = new TableReference(table, collected);
+            interned.put(table, reference);
+            byId.put(table.id, reference);
+            return table;
+        }
+    }
+
+    /**
+     * Drop the ids of collected tables, must hold the registry lock.
+     */
+    private static void purge() {
+        Reference<? extends OptionTable> reference;
+        while ((reference = collected.poll()) != null) {
+            byId.remove(((TableReference) reference).id);
+        }
+    }
+
+    /**
+     * Look up a table by id.
+     * @param id {@link #getId()}
+     * @return the table or null if no table has the id or it was collected
+     */
+    public static OptionTable forId(int id) {
+        synchronized (interned) {
+            purge();
+            TableReference reference = byId.get(id);
+            return reference == null ? null : reference.get();
+        }
+    }
+
+    /**
+     * @return id of the table, never reused for another table within the process
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String get(int index) {
+        return options[index];
+    }
+
+    @Override
+    public int size() {
+        return options.length;
+    }
+
+    /**
+     * @param option option to look for
+     * @return index of the option or -1
+     */
+    @Override
+    public int indexOf(Object option) {
+        for (int i = 0; i < options.length; i++) {
+            if (option == null ? options[i] == null : option.equals(options[i]))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+
+        if (other instanceof OptionTable) {
+            OptionTable table = (OptionTable) other;
+            return hash == table.hash && Arrays.equals(options, table.options);
+        }
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+
+    /**
+     * Weak registry entry remembering the id of its table, so the id can be dropped once it is collected.
+     */
+    private static class TableReference extends WeakReference<OptionTable> {
+        final int id;
+
+        TableReference(OptionTable table, ReferenceQueue<OptionTable> queue) {
+            super(table, queue);
+            this.id = table.id;
+        }
+    }
+}
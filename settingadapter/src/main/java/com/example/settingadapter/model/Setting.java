@@ -30,12 +30,16 @@ import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.StringRes;
 
+import com.example.settingadapter.TimeCodec;
+
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Setting model to display different types
  * of settings/preferences to the user.
+ * Settings are changed on the main thread. Other threads may read them, e.g. to diff or measure
+ * rows in the background; the value and its typed slot are guarded by the setting's lock.
  */
 public class Setting implements Parcelable {
 
@@ -49,12 +53,23 @@ public class Setting implements Parcelable {
     public static final int TIME = 6;
     public static final int FOOTER = 7;
 
+    // Value kinds
+    public static final int VALUE_STRING = 0;
+    public static final int VALUE_BOOLEAN = 1;
+    public static final int VALUE_INT = 2;
+    public static final int VALUE_LONG = 3;
+    public static final int VALUE_TIME = 4;
+    public static final int VALUE_DATE = 5;
+
     // Private Variables
 
     private int type = -1;
     private String key;
     private String title;
+    /** String form of the value, null while a typed value has not been rendered yet. */
     private String value;
+    private int valueKind = VALUE_STRING;
+    private long primitiveValue;
     private List<String> options = new ArrayList<>();
 
     // Public Variables
@@ -73,6 +88,68 @@ public class Setting implements Parcelable {
 
     // Private Methods
 
+    private synchronized void setPrimitive(int kind, long primitive) {
+        if (valueKind == kind && primitiveValue == primitive)
+            return;
+
+        value = null;
+        primitiveValue = primitive;
+        valueKind = kind;
+    }
+
+    private static String renderDate(int date) {
+        StringBuilder builder = new StringBuilder(10);
+        int year = date / 10000;
+        int month = date / 100 % 100;
+        int day = date % 100;
+        builder.append(year).append('-');
+        if (month < 10)
+            builder.append('0');
+        builder.append(month).append('-');
+        if (day < 10)
+            builder.append('0');
+        return builder.append(day).toString();
+    }
+
+    private static long parseLong(String text, long fallback) {
+        if (text == null || text.isEmpty())
+            return fallback;
+
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException exception) {
+            return fallback;
+        }
+    }
+
+    /**
+     * @return the digits from start to end as a number, -1 if any other character is found
+     */
+    private static int parseDigits(String text, int start, int end) {
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    private static int parseDate(String text) {
+        // yyyy-MM-dd
+        if (text == null || text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-')
+            return -1;
+
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 5, 7);
+        int day = parseDigits(text, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31)
+            return -1;
+
+        return year * 10000 + month * 100 + day;
+    }
+
     // Public Methods
 
 
@@ -93,13 +170,107 @@ public class Setting implements Parcelable {
         return this.title;
     }
 
-    public String getValue() {
-        if (value == null)
-            return "";
+    /**
+     * Get the value as a String. Typed values are rendered on the first call after they change.
+     * @return value, never null
+     */
+    public synchronized String getValue() {
+        if (value != null)
+            return value;
+
+        String rendered;
+        long primitive = primitiveValue;
+        switch (valueKind) {
+            case VALUE_BOOLEAN:
+                rendered = primitive != 0 ? "1" : "0";
+                break;
+            case VALUE_INT:
+            case VALUE_LONG:
+                rendered = Long.toString(primitive);
+                break;
+            case VALUE_TIME:
+                rendered = TimeCodec.format((int) primitive);
+                break;
+            case VALUE_DATE:
+                rendered = renderDate((int) primitive);
+                break;
+            default:
+                return "";
+        }
+
+        value = rendered;
+        return rendered;
+    }
+
+    /**
+     * @return which typed slot holds the value, one of the VALUE_ constants
+     */
+    public synchronized int getValueKind() {
+        return valueKind;
+    }
+
+    /**
+     * @return the value as a boolean, String values of "1" and "true" are true
+     */
+    public synchronized boolean getBoolean() {
+        if (valueKind != VALUE_STRING)
+            return primitiveValue != 0;
+
+        return "1".equals(value) || "true".equalsIgnoreCase(value);
+    }
+
+    /**
+     * @param fallback returned when the value is not a number
+     * @return the value as an int
+     */
+    public int getInt(int fallback) {
+        return (int) getLong(fallback);
+    }
+
+    /**
+     * @param fallback returned when the value is not a number
+     * @return the value as a long
+     */
+    public synchronized long getLong(long fallback) {
+        if (valueKind != VALUE_STRING)
+            return primitiveValue;
 
-        return this.value;
+        return parseLong(value, fallback);
     }
 
+    /**
+     * Get the value as a packed time, see {@link TimeCodec}.
+     * String values are parsed without allocating on every call.
+     * @return minutes of the day or {@link TimeCodec#INVALID}
+     */
+    public synchronized int getTime() {
+        if (valueKind == VALUE_TIME)
+            return (int) primitiveValue;
+
+        if (valueKind != VALUE_STRING)
+            return TimeCodec.INVALID;
+
+        return TimeCodec.parse(value);
+    }
+
+    /**
+     * Get the value as a packed date.
+     * String values with format <c>yyyy-MM-dd</c> are parsed without allocating on every call.
+     * @return date packed as <c>yyyyMMdd</c> or -1
+     */
+    public synchronized int getDate() {
+        if (valueKind == VALUE_DATE)
+            return (int) primitiveValue;
+
+        if (valueKind != VALUE_STRING)
+            return -1;
+
+        return parseDate(value);
+    }
+
+    /**
+     * @return options of the setting, immutable if they are shared through an {@link OptionTable}
+     */
     public List<String> getOptions() {
         if (options == null)
             return new ArrayList<>();
@@ -107,6 +278,16 @@ public class Setting implements Parcelable {
         return options;
     }
 
+    /**
+     * @return shared options of the setting, or null if it has its own option list
+     */
+    public OptionTable getOptionTable() {
+        if (options instanceof OptionTable)
+            return (OptionTable) options;
+
+        return null;
+    }
+
     // Setters
 
     public void setType(int type) {
@@ -120,8 +301,36 @@ public class Setting implements Parcelable {
         this.title = title;
     }
 
-    public void setValue(String value) {
+    public synchronized void setValue(String value) {
         this.value = value;
+        this.valueKind = VALUE_STRING;
+    }
+
+    public void setBoolean(boolean value) {
+        setPrimitive(VALUE_BOOLEAN, value ? 1 : 0);
+    }
+
+    public void setInt(int value) {
+        setPrimitive(VALUE_INT, value);
+    }
+
+    public void setLong(long value) {
+        setPrimitive(VALUE_LONG, value);
+    }
+
+    /**
+     * @param time minutes of the day, see {@link TimeCodec#pack(int, int)};
+     *             {@link TimeCodec#INVALID} or out of range times read as an empty value
+     */
+    public void setTime(int time) {
+        setPrimitive(VALUE_TIME, time);
+    }
+
+    /**
+     * @param date date packed as <c>yyyyMMdd</c>
+     */
+    public void setDate(int date) {
+        setPrimitive(VALUE_DATE, date);
     }
 
     /**
@@ -132,6 +341,14 @@ public class Setting implements Parcelable {
         this.options = options;
     }
 
+    /**
+     * Share an option table with other settings instead of keeping an own option list.
+     * @param optionTable interned options, see {@link OptionTable#of(List)}
+     */
+    public void setOptionTable(OptionTable optionTable) {
+        this.options = optionTable;
+    }
+
     // Builder Methods
 
     public static class Builder {
@@ -220,6 +437,15 @@ public class Setting implements Parcelable {
             return this;
         }
 
+        /**
+         * Share options with other settings, equal option lists end up in the same table.
+         * @param options options for user to select
+         */
+        public Builder setSharedOptions(@NonNull List<String> options) {
+            this.options = OptionTable.of(options);
+            return this;
+        }
+
         public Setting build() {
             checkValidity();
 
@@ -235,13 +461,13 @@ public class Setting implements Parcelable {
         key = in.readString();
         title = in.readString();
         value = in.readString();
-        in.readList(options, null);
+        options = in.createStringArrayList();
     }
 
 
     @Override
     public int describeContents() {
-        return this.hashCode();
+        return 0;
     }
 
     @Override
@@ -249,8 +475,8 @@ public class Setting implements Parcelable {
         dest.writeInt(type);
         dest.writeString(key);
         dest.writeString(title);
-        dest.writeString(value);
-        dest.writeList(options);
+        dest.writeString(getValue());
+        dest.writeStringList(options);
 
     }
 
@@ -261,7 +487,7 @@ public class Setting implements Parcelable {
         }
 
         public Setting[] newArray(int size) {
-            return new Setting[0];
+            return new Setting[size];
         }
     };
 
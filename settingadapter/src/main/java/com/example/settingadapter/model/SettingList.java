@@ -0,0 +1,359 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.example.settingadapter.store.SettingSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Parcelable for a whole setting list.
+ * Settings are written column by column against one deduplicated string table,
+ * shared {@link OptionTable}s are written once per list.
+ * Lists whose estimated parcel size is above the spill threshold are written to a
+ * {@link SettingSnapshot} file on a background thread instead and only the file path is parceled;
+ * reading the parcel in the same process waits for that write, and the file is deleted once it is read.
+ * Instance state shares the binder transaction limit with the whole activity, so the default threshold is small.
+ */
+public class SettingList implements Parcelable {
+
+    // Constants
+    private static final String TAG = "SettingList";
+    public static final int DEFAULT_SPILL_THRESHOLD = 8 * 1024;
+
+    private static final int INLINE = 0;
+    private static final int SPILLED = 1;
+
+    /** Spills still being written by path, guarded by itself. */
+    private static final Map<String, Future<?>> pendingSpills = new HashMap<>();
+    private static final ExecutorService spillExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Private Variables
+    private final List<Setting> settingList;
+    private final File spillFile;
+    private final int spillThreshold;
+
+    // Constructors
+
+    /**
+     * @param settingList collection of {@link Setting}
+     * @param spillFile file used when the list is too big to parcel, null to always parcel
+     */
+    public SettingList(@NonNull List<Setting> settingList, File spillFile) {
+        this(settingList, spillFile, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * @param settingList collection of {@link Setting}
+     * @param spillFile file used when the list is too big to parcel, null to always parcel
+     * @param spillThreshold estimated parcel size in bytes above which the list is spilled to disk
+     */
+    public SettingList(@NonNull List<Setting> settingList, File spillFile, int spillThreshold) {
+        this.settingList = settingList;
+        this.spillFile = spillFile;
+        this.spillThreshold = spillThreshold;
+    }
+
+    // Private Methods
+
+    private static int intern(String string, Map<String, Integer> indexes, List<String> strings) {
+        if (string == null)
+            return -1;
+
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    /**
+     * Write the list to the spill file on the spill thread. The list is copied, so rows
+     * changed afterwards do not affect the write; values changed in place may be written.
+     */
+    private void spill() {
+        final List<Setting> copy = new ArrayList<>(settingList);
+        final File file = spillFile;
+        synchronized (pendingSpills) {
+            pendingSpills.put(file.getPath(), spillExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        SettingSnapshot.write(file, copy);
+                    } catch (IOException exception) {
+                        Log.w(TAG, "Could not spill setting list to " + file, exception);
+                    }
+                }
+            }));
+        }
+    }
+
+    private static void awaitSpill(String path) {
+        Future<?> pending;
+        synchronized (pendingSpills) {
+            pending = pendingSpills.remove(path);
+        }
+        if (pending == null)
+            return;
+
+        try {
+            pending.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            Log.w(TAG, "Could not spill setting list to " + path, exception);
+        }
+    }
+
+    private static List<Setting> readSpilled(String path) {
+        awaitSpill(path);
+        File file = new File(path);
+        SettingSnapshot snapshot = SettingSnapshot.open(file);
+        if (snapshot == null) {
+            Log.w(TAG, "Spilled setting list " + path + " is missing or corrupt");
+            return new ArrayList<>();
+        }
+        // copying decodes every row, so the file is no longer needed
+        List<Setting> settingList = new ArrayList<>(snapshot.asList());
+        deleteSpill(file);
+        return settingList;
+    }
+
+    // Public Methods
+
+    /**
+     * Delete a spill file on the spill thread, after the writes to it that are already pending.
+     * Call when no saved state refers to the file any more, e.g. on a fresh start.
+     * @param spillFile file passed to {@link #SettingList(List, File)}
+     */
+    public static void deleteSpill(@NonNull final File spillFile) {
+        spillExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (spillFile.exists() && !spillFile.delete()) {
+                    Log.w(TAG, "Could not delete spilled setting list " + spillFile);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the settings, safe to modify
+     */
+    public List<Setting> getSettings() {
+        return settingList;
+    }
+
+    // Parcel Implementation
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        int size = settingList.size();
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Map<OptionTable, Integer> tableIndexes = new IdentityHashMap<>();
+        int[] types = new int[size];
+        int[] keys = new int[size];
+        int[] titles = new int[size];
+        int[] values = new int[size];
+        int[] optionTables = new int[size];
+        int[] optionCounts = new int[size];
+        IntColumn options = new IntColumn();
+        IntColumn tableSizes = new IntColumn();
+        IntColumn tableOptions = new IntColumn();
+
+        for (int i = 0; i < size; i++) {
+            Setting setting = settingList.get(i);
+            types[i] = setting.getType();
+            keys[i] = intern(setting.getKey(), indexes, strings);
+            titles[i] = intern(setting.getTitle(), indexes, strings);
+            values[i] = intern(setting.getValue(), indexes, strings);
+
+            OptionTable table = setting.getOptionTable();
+            if (table != null) {
+                // shared tables are written once and referenced by every setting using them
+                Integer tableIndex = tableIndexes.get(table);
+                if (tableIndex == null) {
+                    tableIndex = tableSizes.size;
+                    tableIndexes.put(table, tableIndex);
+                    tableSizes.add(table.size());
+                    for (int j = 0; j < table.size(); j++) {
+                        tableOptions.add(intern(table.get(j), indexes, strings));
+                    }
+                }
+                optionTables[i] = tableIndex;
+                continue;
+            }
+
+            List<String> settingOptions = setting.getOptions();
+            optionTables[i] = -1;
+            optionCounts[i] = settingOptions.size();
+            for (int j = 0; j < settingOptions.size(); j++) {
+                options.add(intern(settingOptions.get(j), indexes, strings));
+            }
+        }
+
+        if (spillFile != null) {
+            // parcels store strings as UTF-16 with a length prefix
+            long estimate = (size * 6L + options.size + tableSizes.size + tableOptions.size) * 4;
+            for (int i = 0; i < strings.size(); i++) {
+                estimate += 4 + strings.get(i).length() * 2L;
+            }
+
+            if (estimate > spillThreshold) {
+                spill();
+                dest.writeInt(SPILLED);
+                dest.writeString(spillFile.getPath());
+                return;
+            }
+        }
+
+        dest.writeInt(INLINE);
+        dest.writeStringArray(strings.toArray(new String[strings.size()]));
+        dest.writeIntArray(types);
+        dest.writeIntArray(keys);
+        dest.writeIntArray(titles);
+        dest.writeIntArray(values);
+        dest.writeIntArray(optionTables);
+        dest.writeIntArray(optionCounts);
+        dest.writeIntArray(options.toArray());
+        dest.writeIntArray(tableSizes.toArray());
+        dest.writeIntArray(tableOptions.toArray());
+    }
+
+    private SettingList(Parcel in) {
+        spillFile = null;
+        spillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+        if (in.readInt() == SPILLED) {
+            settingList = readSpilled(in.readString());
+            return;
+        }
+
+        String[] strings = in.createStringArray();
+        int[] types = in.createIntArray();
+        int[] keys = in.createIntArray();
+        int[] titles = in.createIntArray();
+        int[] values = in.createIntArray();
+        int[] optionTables = in.createIntArray();
+        int[] optionCounts = in.createIntArray();
+        int[] options = in.createIntArray();
+        int[] tableSizes = in.createIntArray();
+        int[] tableOptions = in.createIntArray();
+
+        OptionTable[] tables = new OptionTable[tableSizes.length];
+        int tableOption = 0;
+        for (int i = 0; i < tables.length; i++) {
+            String[] tableStrings = new String[tableSizes[i]];
+            for (int j = 0; j < tableStrings.length; j++) {
+                tableStrings[j] = string(strings, tableOptions[tableOption++]);
+            }
+            tables[i] = OptionTable.of(tableStrings);
+        }
+
+        settingList = new ArrayList<>(types.length);
+        int option = 0;
+        for (int i = 0; i < types.length; i++) {
+            List<String> settingOptions;
+            if (optionTables[i] >= 0) {
+                settingOptions = tables[optionTables[i]];
+            } else {
+                settingOptions = new ArrayList<>(optionCounts[i]);
+                for (int j = 0; j < optionCounts[i]; j++) {
+                    settingOptions.add(string(strings, options[option++]));
+                }
+            }
+            settingList.add(new Setting(types[i],
+                    string(strings, keys[i]),
+                    string(strings, titles[i]),
+                    string(strings, values[i]),
+                    settingOptions));
+        }
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    public static final Creator<SettingList> CREATOR = new Creator<SettingList>() {
+        public SettingList createFromParcel(Parcel in) {
+            return new SettingList(in);
+        }
+
+        public SettingList[] newArray(int size) {
+            return new SettingList[size];
+        }
+    };
+
+
+    /**
+     * Growable int array used while collecting columns.
+     */
+    private static class IntColumn {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.model;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread safe store of setting values with immutable, versioned snapshots.
+ * Any thread can publish values without blocking: every publish builds a new snapshot
+ * through a compare-and-set, copying only the chunk of values it changes and sharing the rest
+ * with the previous snapshot. Readers always see one consistent version of every value.
+ * <p>
+ * {@link Setting}s themselves stay main thread objects; a setting screen applies the values
+ * of new snapshots to them, see {@link com.example.settingadapter.ui.SettingItemFragment#setSettingModel(SettingModel)}.
+ */
+public class SettingModel {
+
+    // Constants
+    private static final int CHUNK_SHIFT = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Private Variables
+    private final AtomicReference<Snapshot> current;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Constructors
+
+    /**
+     * @param settingList settings whose keys and current values the model starts with,
+     *                    settings without key are ignored
+     */
+    public SettingModel(@NonNull List<Setting> settingList) {
+        Map<String, Integer> positions = new HashMap<>();
+        String[] keys = new String[settingList.size()];
+        String[] values = new String[settingList.size()];
+        int count = 0;
+        for (Setting setting : settingList) {
+            String key = setting.getKey();
+            if (key != null && !key.isEmpty() && !positions.containsKey(key)) {
+                positions.put(key, count);
+                keys[count] = key;
+                values[count] = setting.getValue();
+                count++;
+            }
+        }
+
+        String[][] chunks = new String[(count + CHUNK_MASK) >> CHUNK_SHIFT][];
+        for (int i = 0; i < chunks.length; i++) {
+            int start = i << CHUNK_SHIFT;
+            chunks[i] = new String[Math.min(CHUNK_SIZE, count - start)];
+            System.arraycopy(values, start, chunks[i], 0, chunks[i].length);
+        }
+
+        String[] trimmedKeys = new String[count];
+        System.arraycopy(keys, 0, trimmedKeys, 0, count);
+        current = new AtomicReference<>(new Snapshot(0, trimmedKeys, Collections.unmodifiableMap(positions), chunks));
+    }
+
+    // Private Methods
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private void notifyPublished(Snapshot snapshot) {
+        for (Listener listener : listeners) {
+            listener.onPublished(snapshot);
+        }
+    }
+
+    // Public Methods
+
+    /**
+     * @return the latest snapshot
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Publish a value from any thread.
+     * @param key {@link Setting#getKey()}
+     * @param value new value
+     * @return false if the model has no setting with the key
+     */
+    public boolean publish(@NonNull String key, String value) {
+        publish(Collections.singletonMap(key, value));
+        return current.get().positions.containsKey(key);
+    }
+
+    /**
+     * Publish several values from any thread as one version.
+     * @param values new values by {@link Setting#getKey()}, unknown keys are ignored
+     * @return version of the published snapshot, or -1 if no value changed
+     */
+    public long publish(@NonNull Map<String, String> values) {
+        while (true) {
+            Snapshot base = current.get();
+            String[][] chunks = null;
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                Integer position = base.positions.get(entry.getKey());
+                if (position == null || equals(base.getValue(position), entry.getValue()))
+                    continue;
+
+                if (chunks == null) {
+                    chunks = base.chunks.clone();
+                }
+                int chunk = position >> CHUNK_SHIFT;
+                if (chunks[chunk] == base.chunks[chunk]) {
+                    chunks[chunk] = chunks[chunk].clone();
+                }
+                chunks[chunk][position & CHUNK_MASK] = entry.getValue();
+            }
+            if (chunks == null)
+                return -1;
+
+            Snapshot next = new Snapshot(base.version + 1, base.keys, base.positions, chunks);
+            if (current.compareAndSet(base, next)) {
+                notifyPublished(next);
+                return next.version;
+            }
+            // another thread published first, apply the values on top of its snapshot
+        }
+    }
+
+    /**
+     * @param listener called on the publishing thread after every new snapshot
+     */
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener listener added with {@link #addListener(Listener)}
+     */
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+
+    public interface Listener {
+        /**
+         * A new snapshot was published. Called on the publishing thread, newer snapshots
+         * may already be published when it runs.
+         * @param snapshot the published snapshot
+         */
+        void onPublished(Snapshot snapshot);
+    }
+
+    /**
+     * Immutable version of all values. Snapshots share unchanged chunks of values,
+     * so the values that changed between two snapshots are found without comparing every value.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final String[] keys;
+        private final Map<String, Integer> positions;
+        private final String[][] chunks;
+
+        private Snapshot(long version, String[] keys, Map<String, Integer> positions, String[][] chunks) {
+            this.version = version;
+            this.keys = keys;
+            this.positions = positions;
+            this.chunks = chunks;
+        }
+
+        /**
+         * @return version of the snapshot, increasing with every publish
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return number of keys in the model
+         */
+        public int size() {
+            return keys.length;
+        }
+
+        /**
+         * @param position position of the key in the model
+         * @return {@link Setting#getKey()}
+         */
+        public String getKey(int position) {
+            return keys[position];
+        }
+
+        /**
+         * @param position position of the key in the model
+         * @return the value
+         */
+        public String getValue(int position) {
+            return chunks[position >> CHUNK_SHIFT][position & CHUNK_MASK];
+        }
+
+        /**
+         * @param key {@link Setting#getKey()}
+         * @return the value, or null if the model has no setting with the key
+         */
+        public String getValue(String key) {
+            Integer position = positions.get(key);
+            return position == null ? null : getValue(position);
+        }
+
+        /**
+         * Find the values changed since an older snapshot of the same model.
+         * @param older older snapshot, null to get every position
+         * @return positions of the changed values, ascending
+         */
+        public int[] changedSince(Snapshot older) {
+            int[] changed = new int[keys.length];
+            int count = 0;
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                String[] values = chunks[chunk];
+                String[] olderValues = older == null ? null : older.chunks[chunk];
+                if (values == olderValues)
+                    continue;
+
+                for (int i = 0; i < values.length; i++) {
+                    if (olderValues == null || !SettingModel.equals(values[i], olderValues[i])) {
+                        changed[count++] = (chunk << CHUNK_SHIFT) + i;
+                    }
+                }
+            }
+            int[] result = new int[count];
+            System.arraycopy(changed, 0, result, 0, count);
+            return result;
+        }
+    }
+}
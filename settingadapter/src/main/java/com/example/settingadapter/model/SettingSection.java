@@ -0,0 +1,185 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.model;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node of a sectioned setting model: a HEADER and the settings below it.
+ * Children of a collapsed section are not shown and, when the section has a {@link ChildLoader},
+ * are only loaded the first time it is expanded.
+ */
+public class SettingSection {
+
+    // Private Variables
+    private final Setting header;
+    private List<Setting> children;
+    private ChildLoader loader;
+    private boolean expanded;
+
+    // Constructors
+
+    /**
+     * @param header HEADER setting of the section, null for settings above the first header
+     * @param children settings of the section
+     * @param expanded whether the children are shown initially
+     */
+    public SettingSection(Setting header, @NonNull List<Setting> children, boolean expanded) {
+        this.header = header;
+        this.children = children;
+        this.expanded = expanded || header == null;
+    }
+
+    /**
+     * Section whose children are loaded when it is first expanded.
+     * @param header HEADER setting of the section
+     * @param loader builds the children
+     */
+    public SettingSection(@NonNull Setting header, @NonNull ChildLoader loader) {
+        this.header = header;
+        this.loader = loader;
+        this.expanded = false;
+    }
+
+    // Public Methods
+
+    /**
+     * Split a flat setting list into sections at every HEADER.
+     * @param settingList collection of {@link Setting}
+     * @param expanded whether the sections are expanded initially
+     * @return the sections, the first one has no header if the list does not start with one
+     */
+    public static List<SettingSection> split(@NonNull List<Setting> settingList, boolean expanded) {
+        List<SettingSection> sections = new ArrayList<>();
+        Setting header = null;
+        List<Setting> children = new ArrayList<>();
+        for (Setting setting : settingList) {
+            if (setting.getType() == Setting.HEADER) {
+                if (header != null || !children.isEmpty()) {
+                    sections.add(new SettingSection(header, children, expanded));
+                }
+                header = setting;
+                children = new ArrayList<>();
+            } else {
+                children.add(setting);
+            }
+        }
+        if (header != null || !children.isEmpty()) {
+            sections.add(new SettingSection(header, children, expanded));
+        }
+        return sections;
+    }
+
+    /**
+     * @return HEADER setting or null for settings above the first header
+     */
+    public Setting getHeader() {
+        return header;
+    }
+
+    /**
+     * @return whether the children are shown
+     */
+    public boolean isExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Sections without a header are always expanded.
+     * @param expanded whether the children are shown
+     */
+    public void setExpanded(boolean expanded) {
+        this.expanded = expanded || header == null;
+    }
+
+    /**
+     * @return true if the children are in memory
+     */
+    public boolean isLoaded() {
+        return children != null;
+    }
+
+    /**
+     * Get the children, loading them on first access.
+     * @return settings of the section
+     */
+    public List<Setting> getChildren() {
+        if (children == null) {
+            List<Setting> loaded = loader.loadChildren(header);
+            children = loaded != null ? loaded : new ArrayList<Setting>();
+            loader = null;
+        }
+        return children;
+    }
+
+    /**
+     * Replace the children, e.g. with the rows a collapsed section showed after settings
+     * were inserted into or removed from it.
+     * @param children settings of the section
+     */
+    public void setChildren(@NonNull List<Setting> children) {
+        this.children = children;
+        this.loader = null;
+    }
+
+    /**
+     * @return number of rows the section shows, header included
+     */
+    public int getVisibleCount() {
+        int count = header != null ? 1 : 0;
+        if (expanded) {
+            count += getChildren().size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the rows the section shows, header included
+     */
+    public List<Setting> getVisibleSettings() {
+        if (!expanded)
+            return header != null ? Collections.singletonList(header) : Collections.<Setting>emptyList();
+
+        List<Setting> visible = new ArrayList<>(getVisibleCount());
+        if (header != null) {
+            visible.add(header);
+        }
+        visible.addAll(getChildren());
+        return visible;
+    }
+
+
+    public interface ChildLoader {
+        /**
+         * Build the settings of a section, called on the main thread when it is first expanded.
+         * @param header HEADER setting of the section
+         * @return settings of the section
+         */
+        List<Setting> loadChildren(Setting header);
+    }
+}
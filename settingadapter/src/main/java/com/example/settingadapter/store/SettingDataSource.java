@@ -0,0 +1,60 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.store;
+
+import com.example.settingadapter.model.Setting;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Source of settings that are loaded in pages instead of being kept in memory as a whole,
+ * e.g. a large file or a database table.
+ * Every method is called on a background thread, one call at a time.
+ */
+public interface SettingDataSource {
+
+    /**
+     * @return number of settings in the source
+     * @throws IOException when the source cannot be read
+     */
+    int count() throws IOException;
+
+    /**
+     * Load a range of settings.
+     * @param start position of the first setting
+     * @param count number of settings to load, the range is within {@link #count()}
+     * @return the settings, fresh instances that may be modified
+     * @throws IOException when the source cannot be read
+     */
+    List<Setting> load(int start, int count) throws IOException;
+
+    /**
+     * Find the position of a setting by key.
+     * @param key {@link Setting#getKey()}
+     * @return position of the setting or -1 if not found
+     * @throws IOException when the source cannot be read
+     */
+    int positionOf(String key) throws IOException;
+}
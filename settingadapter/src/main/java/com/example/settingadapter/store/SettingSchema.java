@@ -0,0 +1,311 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.store;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.XmlResourceParser;
+import android.support.annotation.NonNull;
+import android.support.annotation.RawRes;
+import android.support.annotation.XmlRes;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.example.settingadapter.model.Setting;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Loads setting screens declared in an XML or JSON resource instead of building them in code.
+ * <p>
+ * XML resources in <c>res/xml</c> have one element per setting, named after its type:
+ * <pre>
+ * &lt;settings&gt;
+ *     &lt;header title="@string/time_header"/&gt;
+ *     &lt;time key="EXISTING_TIME" title="Pick a new time:" value="15:30"/&gt;
+ *     &lt;list key="DAY_OF_WEEK" title="Pick a day:"&gt;
+ *         &lt;option&gt;Sunday&lt;/option&gt;
+ *         &lt;option&gt;Monday&lt;/option&gt;
+ *     &lt;/list&gt;
+ * &lt;/settings&gt;
+ * </pre>
+ * JSON resources in <c>res/raw</c> hold an array of objects with the same names:
+ * <pre>
+ * [{"type": "list", "key": "DAY_OF_WEEK", "title": "Pick a day:", "options": ["Sunday", "Monday"]}]
+ * </pre>
+ * String references are resolved for XML title and value attributes; JSON values are used as written.
+ * Resources are read with a streaming parser and every setting is validated by {@link Setting.Builder}.
+ * The result is compiled into a {@link SettingSnapshot} in the cache directory, keyed by the app
+ * version and locale, so later launches map the snapshot and never parse or validate again.
+ * Every launch returns the lazily decoded list of the snapshot.
+ * Loading reads and may write files, call it off the main thread.
+ */
+public class SettingSchema {
+
+    // Constants
+    private static final String TAG = "SettingSchema";
+    private static final String FILE_PREFIX = "setting-schema-";
+    private static final String[] TYPE_NAMES = {
+            "header", "switch", "list", "selectable_item", "input", "date", "time", "footer"
+    };
+
+    // Constructors
+
+    private SettingSchema() {
+    }
+
+    // Private Methods
+
+    private static int typeOf(String name) {
+        for (int type = 0; type < TYPE_NAMES.length; type++) {
+            if (TYPE_NAMES[type].equals(name))
+                return type;
+        }
+        return -1;
+    }
+
+    /**
+     * Read an attribute, resolving references such as <c>@string/title</c>.
+     */
+    private static String attribute(Context context, XmlResourceParser parser, String name) {
+        int resId = parser.getAttributeResourceValue(null, name, 0);
+        if (resId != 0)
+            return context.getString(resId);
+
+        return parser.getAttributeValue(null, name);
+    }
+
+    /**
+     * Cache key changing whenever the resources or the language of string references may have changed.
+     */
+    private static String versionOf(Context context) {
+        String locale = Locale.getDefault().toString();
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            return info.versionCode + "-" + info.lastUpdateTime + "-" + locale;
+        } catch (PackageManager.NameNotFoundException exception) {
+            return "0-0-" + locale;
+        }
+    }
+
+    private static List<Setting> load(Context context, int resId, SettingSnapshot.Loader loader) {
+        String name = context.getResources().getResourceEntryName(resId);
+        String prefix = FILE_PREFIX + name + "-";
+        File dir = context.getCacheDir();
+        File file = new File(dir, prefix + versionOf(context));
+
+        List<Setting> settingList = SettingSnapshot.read(file, loader);
+
+        // drop snapshots compiled for other versions
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File stale : files) {
+                if (stale.getName().startsWith(prefix) && !stale.equals(file) && !stale.delete()) {
+                    Log.w(TAG, "Could not delete stale schema " + stale);
+                }
+            }
+        }
+        return settingList;
+    }
+
+    private static Setting build(int type, String key, String title, String value, List<String> options) {
+        Setting.Builder builder = new Setting.Builder().setType(type);
+        if (key != null) {
+            builder.setKey(key);
+        }
+        if (title != null) {
+            builder.setTitle(title);
+        }
+        if (value != null) {
+            builder.setValue(value);
+        }
+        if (!options.isEmpty()) {
+            builder.setSharedOptions(options);
+        }
+        return builder.build();
+    }
+
+    private static List<Setting> parseXml(Context context, XmlResourceParser parser) throws XmlPullParserException, IOException {
+        List<Setting> settingList = new ArrayList<>();
+        String typeName = null;
+        String key = null;
+        String title = null;
+        String value = null;
+        List<String> options = new ArrayList<>();
+        StringBuilder option = null;
+
+        for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            switch (event) {
+                case XmlPullParser.START_TAG:
+                    if (parser.getDepth() == 2) {
+                        typeName = parser.getName();
+                        key = parser.getAttributeValue(null, "key");
+                        title = attribute(context, parser, "title");
+                        value = attribute(context, parser, "value");
+                        options = new ArrayList<>();
+                    } else if (parser.getDepth() == 3 && "option".equals(parser.getName())) {
+                        option = new StringBuilder();
+                    }
+                    break;
+                case XmlPullParser.TEXT:
+                    if (option != null) {
+                        option.append(parser.getText());
+                    }
+                    break;
+                case XmlPullParser.END_TAG:
+                    if (parser.getDepth() == 3 && option != null) {
+                        options.add(option.toString().trim());
+                        option = null;
+                    } else if (parser.getDepth() == 2) {
+                        settingList.add(build(typeOf(typeName), key, title, value, options));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return settingList;
+    }
+
+    private static String nextValue(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN)
+            return reader.nextBoolean() ? "1" : "0";
+
+        return reader.nextString();
+    }
+
+    private static List<Setting> parseJson(JsonReader reader) throws IOException {
+        List<Setting> settingList = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String typeName = null;
+            String key = null;
+            String title = null;
+            String value = null;
+            List<String> options = new ArrayList<>();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if ("type".equals(field)) {
+                    typeName = reader.nextString();
+                } else if ("key".equals(field)) {
+                    key = reader.nextString();
+                } else if ("title".equals(field)) {
+                    title = reader.nextString();
+                } else if ("value".equals(field)) {
+                    value = nextValue(reader);
+                } else if ("options".equals(field)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        options.add(nextValue(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            settingList.add(build(typeOf(typeName), key, title, value, options));
+        }
+        reader.endArray();
+        return settingList;
+    }
+
+    // Public Methods
+
+    /**
+     * Load a setting screen declared in an XML resource, see {@link SettingSchema}.
+     * The resource is only parsed when no snapshot was compiled for the current version yet.
+     * @param context context used for resources and the cache directory
+     * @param xmlRes XML resource id
+     * @return settings decoded as they are requested; values can be changed,
+     *         copy the list into an {@link ArrayList} before inserting or removing settings
+     * @throws IllegalArgumentException when the resource is malformed
+     * @throws UnsupportedOperationException when a setting is missing its type or key
+     */
+    public static List<Setting> loadXml(@NonNull final Context context, @XmlRes final int xmlRes) {
+        return load(context, xmlRes, new SettingSnapshot.Loader() {
+            @Override
+            public List<Setting> load() {
+                XmlResourceParser parser = context.getResources().getXml(xmlRes);
+                try {
+                    return parseXml(context, parser);
+                } catch (XmlPullParserException | IOException exception) {
+                    throw new IllegalArgumentException("Setting schema " + xmlRes + " is malformed", exception);
+                } finally {
+                    parser.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Load a setting screen declared in a JSON resource, see {@link SettingSchema}.
+     * The resource is only parsed when no snapshot was compiled for the current version yet.
+     * @param context context used for resources and the cache directory
+     * @param rawRes raw resource id
+     * @return settings decoded as they are requested; values can be changed,
+     *         copy the list into an {@link ArrayList} before inserting or removing settings
+     * @throws IllegalArgumentException when the resource is malformed
+     * @throws UnsupportedOperationException when a setting is missing its type or key
+     */
+    public static List<Setting> loadJson(@NonNull final Context context, @RawRes final int rawRes) {
+        return load(context, rawRes, new SettingSnapshot.Loader() {
+            @Override
+            public List<Setting> load() {
+                JsonReader reader = new JsonReader(new InputStreamReader(
+                        context.getResources().openRawResource(rawRes), Charset.forName("UTF-8")));
+                try {
+                    return parseJson(reader);
+                } catch (IOException | IllegalStateException exception) {
+                    throw new IllegalArgumentException("Setting schema " + rawRes + " is malformed", exception);
+                } finally {
+                    try {
+                        reader.close();
+                    } catch (IOException ignored) {
+                        // nothing left to do
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,433 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.store;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.example.settingadapter.model.OptionTable;
+import com.example.settingadapter.model.Setting;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of a whole setting list.
+ * The file is memory mapped and rows are only decoded when they are first requested.
+ * <p>
+ * Layout, all integers big endian:
+ * <pre>
+ * header   magic, version, row count, option count, string count, crc32 of everything after the header
+ * rows     per row: type, key, title, value (string indexes, -1 for null), first option,
+ *          option count, inverted (~count) for options shared through an {@link OptionTable}
+ * options  string index per option
+ * strings  string count + 1 byte offsets, followed by the UTF-8 bytes of every distinct string
+ * </pre>
+ */
+public class SettingSnapshot {
+
+    // Constants
+    private static final String TAG = "SettingSnapshot";
+    private static final int MAGIC = 0x53455453; // "SETS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 6 * 4;
+    private static final int ROW_SIZE = 6 * 4;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Private Variables
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final int optionsOffset;
+    private final int stringOffsetsOffset;
+    private final int stringBytesOffset;
+
+    private final Setting[] rows;
+    private final String[] strings;
+    private byte[] scratch = new byte[64];
+
+    // Constructors
+
+    private SettingSnapshot(ByteBuffer buffer, int rowCount, int optionCount, int stringCount) {
+        this.buffer = buffer;
+        this.rowCount = rowCount;
+        this.optionsOffset = HEADER_SIZE + rowCount * ROW_SIZE;
+        this.stringOffsetsOffset = optionsOffset + optionCount * 4;
+        this.stringBytesOffset = stringOffsetsOffset + (stringCount + 1) * 4;
+        this.rows = new Setting[rowCount];
+        this.strings = new String[stringCount];
+    }
+
+    // Private Methods
+
+    private static int checksum(ByteBuffer buffer, int from) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        ByteBuffer view = buffer.duplicate();
+        view.position(from);
+        while (view.hasRemaining()) {
+            int length = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    private String string(int index) {
+        if (index < 0)
+            return null;
+
+        String string = strings[index];
+        if (string == null) {
+            int start = buffer.getInt(stringOffsetsOffset + index * 4);
+            int end = buffer.getInt(stringOffsetsOffset + (index + 1) * 4);
+            int length = end - start;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = buffer.get(stringBytesOffset + start + i);
+            }
+            string = new String(scratch, 0, length, UTF_8);
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    private boolean bytesEqual(int index, byte[] encoded) {
+        int start = buffer.getInt(stringOffsetsOffset + index * 4);
+        int end = buffer.getInt(stringOffsetsOffset + (index + 1) * 4);
+        if (end - start != encoded.length)
+            return false;
+
+        for (int i = 0; i < encoded.length; i++) {
+            if (buffer.get(stringBytesOffset + start + i) != encoded[i])
+                return false;
+        }
+        return true;
+    }
+
+    private Setting decode(int position) {
+        int row = HEADER_SIZE + position * ROW_SIZE;
+        int type = buffer.getInt(row);
+        String key = string(buffer.getInt(row + 4));
+        String title = string(buffer.getInt(row + 8));
+        String value = string(buffer.getInt(row + 12));
+        int firstOption = buffer.getInt(row + 16);
+        int optionCount = buffer.getInt(row + 20);
+        boolean shared = optionCount < 0;
+        if (shared) {
+            optionCount = ~optionCount;
+        }
+
+        String[] options = new String[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            options[i] = string(buffer.getInt(optionsOffset + (firstOption + i) * 4));
+        }
+        // shared options are interned again, so every setting with them references the same table
+        List<String> optionList = shared ? OptionTable.of(options) : new ArrayList<>(Arrays.asList(options));
+        return new Setting(type, key, title, value, optionList);
+    }
+
+    // Public Methods
+
+    /**
+     * Open a snapshot file.
+     * @param file snapshot file
+     * @return the snapshot or null if the file is missing, from another version or corrupt
+     */
+    public static SettingSnapshot open(@NonNull File file) {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                return null;
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                return null;
+
+            int rowCount = buffer.getInt(8);
+            int optionCount = buffer.getInt(12);
+            int stringCount = buffer.getInt(16);
+            long minimumSize = HEADER_SIZE + (long) rowCount * ROW_SIZE + optionCount * 4L + (stringCount + 1) * 4L;
+            if (rowCount < 0 || optionCount < 0 || stringCount < 0 || minimumSize > buffer.capacity())
+                return null;
+
+            if (checksum(buffer, HEADER_SIZE) != buffer.getInt(20)) {
+                Log.w(TAG, "Checksum mismatch in " + file);
+                return null;
+            }
+            return new SettingSnapshot(buffer, rowCount, optionCount, stringCount);
+        } catch (FileNotFoundException exception) {
+            return null;
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not map " + file, exception);
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    // the mapping stays valid after the file is closed
+                    randomAccessFile.close();
+                } catch (IOException ignored) {
+                    // nothing left to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot file, replacing it atomically through a temp file and rename.
+     * @param file snapshot file
+     * @param settingList collection of {@link Setting}
+     * @throws IOException when the file could not be written
+     */
+    public static void write(@NonNull File file, @NonNull List<Setting> settingList) throws IOException {
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int rowCount = settingList.size();
+        int[] rows = new int[rowCount * 6];
+        int[] options = new int[16];
+        int optionCount = 0;
+
+        for (int i = 0; i < rowCount; i++) {
+            Setting setting = settingList.get(i);
+            List<String> settingOptions = setting.getOptions();
+            rows[i * 6] = setting.getType();
+            rows[i * 6 + 1] = intern(setting.getKey(), stringIndexes, strings);
+            rows[i * 6 + 2] = intern(setting.getTitle(), stringIndexes, strings);
+            rows[i * 6 + 3] = intern(setting.getValue(), stringIndexes, strings);
+            rows[i * 6 + 4] = optionCount;
+            rows[i * 6 + 5] = setting.getOptionTable() != null ? ~settingOptions.size() : settingOptions.size();
+            for (String option : settingOptions) {
+                if (optionCount == options.length) {
+                    options = Arrays.copyOf(options, options.length * 2);
+                }
+                options[optionCount++] = intern(option, stringIndexes, strings);
+            }
+        }
+
+        byte[][] encoded = new byte[strings.size()][];
+        int stringBytes = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(UTF_8);
+            stringBytes += encoded[i].length;
+        }
+
+        int bodySize = rowCount * ROW_SIZE + optionCount * 4 + (encoded.length + 1) * 4 + stringBytes;
+        ByteBuffer body = ByteBuffer.allocate(bodySize).order(ByteOrder.BIG_ENDIAN);
+        for (int row : rows) {
+            body.putInt(row);
+        }
+        for (int i = 0; i < optionCount; i++) {
+            body.putInt(options[i]);
+        }
+        int offset = 0;
+        for (byte[] bytes : encoded) {
+            body.putInt(offset);
+            offset += bytes.length;
+        }
+        body.putInt(offset);
+        for (byte[] bytes : encoded) {
+            body.put(bytes);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, bodySize);
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tempFile);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rowCount);
+            out.writeInt(optionCount);
+            out.writeInt(encoded.length);
+            out.writeInt((int) crc.getValue());
+            out.write(body.array(), 0, bodySize);
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+
+        if (!tempFile.renameTo(file))
+            throw new IOException("Could not rename " + tempFile + " to " + file);
+    }
+
+    private static int intern(String string, Map<String, Integer> indexes, List<String> strings) {
+        if (string == null)
+            return -1;
+
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    /**
+     * Read settings from a snapshot, rebuilding it when it is missing or corrupt.
+     * A rebuilt snapshot is mapped like an existing one, so both return the same kind of list.
+     * @param file snapshot file
+     * @param loader builds the settings when the snapshot cannot be used
+     * @return lazily decoded settings, see {@link #asList()}, or the loader's settings if the rebuild failed
+     */
+    public static List<Setting> read(@NonNull File file, @NonNull Loader loader) {
+        SettingSnapshot snapshot = open(file);
+        if (snapshot != null)
+            return snapshot.asList();
+
+        List<Setting> settingList = loader.load();
+        try {
+            write(file, settingList);
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not rebuild " + file, exception);
+            return settingList;
+        }
+        snapshot = open(file);
+        return snapshot != null ? snapshot.asList() : settingList;
+    }
+
+    /**
+     * @return number of settings in the snapshot
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Get a setting, decoding it on first access.
+     * @param position position in the snapshot
+     * @return {@link Setting}
+     */
+    public synchronized Setting get(int position) {
+        Setting setting = rows[position];
+        if (setting == null) {
+            setting = decode(position);
+            rows[position] = setting;
+        }
+        return setting;
+    }
+
+    /**
+     * Decode a setting without keeping it, for callers that cache settings themselves.
+     * @param position position in the snapshot
+     * @return a new {@link Setting}
+     */
+    public synchronized Setting load(int position) {
+        return decode(position);
+    }
+
+    /**
+     * Find the position of a setting by key, scanning the rows.
+     * @param key {@link Setting#getKey()}
+     * @return position of the first setting with the key or -1 if not found
+     */
+    public synchronized int positionOf(String key) {
+        if (key == null)
+            return -1;
+
+        // compare encoded bytes, so the lookup does not decode and keep the whole string table
+        byte[] encoded = key.getBytes(UTF_8);
+        int keyIndex = -1;
+        for (int i = 0; i < strings.length && keyIndex < 0; i++) {
+            if (strings[i] != null ? key.equals(strings[i]) : bytesEqual(i, encoded)) {
+                keyIndex = i;
+            }
+        }
+        if (keyIndex < 0)
+            return -1;
+
+        for (int position = 0; position < rowCount; position++) {
+            if (buffer.getInt(HEADER_SIZE + position * ROW_SIZE + 4) == keyIndex)
+                return position;
+        }
+        return -1;
+    }
+
+    /**
+     * @param settingList any list of settings
+     * @return the snapshot the list is a view of, see {@link #asList()}, or null
+     */
+    public static SettingSnapshot backing(List<Setting> settingList) {
+        return settingList instanceof SnapshotList ? ((SnapshotList) settingList).snapshot() : null;
+    }
+
+    /**
+     * The list cannot be resized, copy it into an {@link ArrayList} before inserting
+     * or removing settings. Values of the decoded settings can be changed.
+     * @return list view over the snapshot that decodes rows as they are requested
+     */
+    public List<Setting> asList() {
+        return new SnapshotList();
+    }
+
+
+    public interface Loader {
+        /**
+         * Build the settings from their original source.
+         * @return collection of {@link Setting}
+         */
+        List<Setting> load();
+    }
+
+    private class SnapshotList extends AbstractList<Setting> implements RandomAccess {
+        SettingSnapshot snapshot() {
+            return SettingSnapshot.this;
+        }
+
+        @Override
+        public Setting get(int index) {
+            return SettingSnapshot.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return rowCount;
+        }
+    }
+}
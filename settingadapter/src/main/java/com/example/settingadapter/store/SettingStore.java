@@ -0,0 +1,349 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.store;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.example.settingadapter.model.Setting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists setting values by key.
+ * Values are kept in memory and written behind on a background thread.
+ * Repeated changes to the same key within the write delay end up in a single write,
+ * and every write replaces the file atomically through a temp file and rename.
+ * The file is read on the background thread as soon as the store is created, {@link #put(String, String)}
+ * never waits for it; create the store early so {@link #get(String)} and {@link #hydrate(List)} do not either.
+ */
+public class SettingStore {
+
+    // Constants
+    private static final String TAG = "SettingStore";
+    private static final int FILE_VERSION = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long DEFAULT_WRITE_DELAY_MILLIS = 500;
+
+    // Private Variables
+    private final File file;
+    private final File tempFile;
+    private final long writeDelayMillis;
+    private final Map<String, String> values = new HashMap<>();
+    private final ScheduledExecutorService executor;
+    private final Future<?> loadTask;
+    /** Keys removed before the file was read, so the file does not bring them back. */
+    private final Set<String> removedBeforeLoad = new HashSet<>();
+
+    private boolean loaded = false;
+    private boolean dirty = false;
+    private boolean writeScheduled = false;
+    private boolean closed = false;
+
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    // Constructors
+
+    /**
+     * Store backed by a file in the app's private files directory.
+     * @param context any context
+     * @param name file name
+     */
+    public SettingStore(@NonNull Context context, @NonNull String name) {
+        this(new File(context.getFilesDir(), name), DEFAULT_WRITE_DELAY_MILLIS);
+    }
+
+    /**
+     * @param file file to persist to
+     * @param writeDelayMillis how long changes are collected before they are written
+     */
+    public SettingStore(@NonNull File file, long writeDelayMillis) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+        this.writeDelayMillis = writeDelayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.loadTask = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    // Private Methods
+
+    /**
+     * Read the file and merge it below the values put while it was read.
+     */
+    private void load() {
+        Map<String, String> stored = new HashMap<>();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            int version = in.readInt();
+            if (version == FILE_VERSION) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = readString(in);
+                    stored.put(key, readString(in));
+                }
+            }
+        } catch (FileNotFoundException exception) {
+            // nothing stored yet
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not read " + file + ", starting empty", exception);
+            stored.clear();
+        } finally {
+            closeQuietly(in);
+        }
+
+        synchronized (values) {
+            for (Map.Entry<String, String> entry : stored.entrySet()) {
+                String key = entry.getKey();
+                if (!values.containsKey(key) && !removedBeforeLoad.contains(key)) {
+                    values.put(key, entry.getValue());
+                }
+            }
+            removedBeforeLoad.clear();
+            loaded = true;
+        }
+    }
+
+    private void awaitLoaded() {
+        synchronized (values) {
+            if (loaded)
+                return;
+        }
+        try {
+            loadTask.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            Log.w(TAG, "Could not load " + file, exception);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void write() {
+        Map<String, String> copy;
+        synchronized (values) {
+            writeScheduled = false;
+            if (!dirty)
+                return;
+            dirty = false;
+            copy = new HashMap<>(values);
+        }
+
+        FileOutputStream fileOut = null;
+        try {
+            fileOut = new FileOutputStream(tempFile);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(FILE_VERSION);
+            out.writeInt(copy.size());
+            for (Map.Entry<String, String> entry : copy.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+            fileOut = null;
+
+            if (!tempFile.renameTo(file))
+                throw new IOException("Could not rename " + tempFile + " to " + file);
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not write " + file, exception);
+            synchronized (values) {
+                dirty = true;
+            }
+        } finally {
+            closeQuietly(fileOut);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // nothing left to do
+            }
+        }
+    }
+
+    // Public Methods
+
+    /**
+     * Get a stored value. Waits for the file to be read if it is not yet.
+     * @param key {@link Setting#getKey()}
+     * @return stored value or null
+     */
+    public String get(String key) {
+        awaitLoaded();
+        synchronized (values) {
+            return values.get(key);
+        }
+    }
+
+    /**
+     * Record a value and schedule a write.
+     * @param key {@link Setting#getKey()}
+     * @param value new value
+     */
+    public void put(@NonNull String key, String value) {
+        synchronized (values) {
+            if (!loaded) {
+                // unknown whether the file holds the same value, so always write
+                if (value == null) {
+                    values.remove(key);
+                    removedBeforeLoad.add(key);
+                } else {
+                    values.put(key, value);
+                    removedBeforeLoad.remove(key);
+                }
+            } else if (value == null) {
+                if (values.remove(key) == null)
+                    return;
+            } else if (value.equals(values.put(key, value))) {
+                return;
+            }
+
+            dirty = true;
+            if (!writeScheduled && !closed) {
+                writeScheduled = true;
+                executor.schedule(writeTask, writeDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Copy stored values into settings with a matching key. Waits for the file to be read if it is not yet.
+     * @param settingList collection of {@link Setting}
+     */
+    public void hydrate(List<Setting> settingList) {
+        if (settingList == null)
+            return;
+
+        awaitLoaded();
+        synchronized (values) {
+            for (int i = 0; i < settingList.size(); i++) {
+                Setting setting = settingList.get(i);
+                if (setting.getKey() == null || setting.getKey().isEmpty())
+                    continue;
+
+                String value = values.get(setting.getKey());
+                if (value != null) {
+                    setting.setValue(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start writing pending changes now without waiting for the write to finish.
+     * Call from lifecycle stops so nothing waiting on the write delay is lost.
+     */
+    public void writeNow() {
+        synchronized (values) {
+            if (closed || !dirty)
+                return;
+        }
+        executor.execute(writeTask);
+    }
+
+    /**
+     * Write pending changes now and wait for the write to finish.
+     * Blocks on disk I/O, do not call from the main thread.
+     */
+    public void flush() {
+        if (executor.isShutdown())
+            return;
+
+        try {
+            executor.submit(writeTask).get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            Log.w(TAG, "Could not flush " + file, exception);
+        }
+    }
+
+    /**
+     * Stop the background thread once it has written pending changes, without waiting for it.
+     * Values put afterwards are kept in memory but no longer written.
+     */
+    public void close() {
+        synchronized (values) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        executor.execute(writeTask);
+        executor.shutdown();
+    }
+}
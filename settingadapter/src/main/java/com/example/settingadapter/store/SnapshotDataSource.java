@@ -0,0 +1,94 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.store;
+
+import android.support.annotation.NonNull;
+
+import com.example.settingadapter.model.Setting;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link SettingDataSource} reading pages from a {@link SettingSnapshot} file.
+ * The file is mapped on first use and rows are decoded per page without being retained.
+ */
+public class SnapshotDataSource implements SettingDataSource {
+
+    // Private Variables
+    private final File file;
+    private SettingSnapshot snapshot;
+
+    // Constructors
+
+    /**
+     * @param file snapshot file written with {@link SettingSnapshot#write(File, List)}
+     */
+    public SnapshotDataSource(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * @param snapshot snapshot that is already open
+     */
+    public SnapshotDataSource(@NonNull SettingSnapshot snapshot) {
+        this.file = null;
+        this.snapshot = snapshot;
+    }
+
+    // Private Methods
+
+    private synchronized SettingSnapshot snapshot() throws IOException {
+        if (snapshot == null) {
+            snapshot = SettingSnapshot.open(file);
+            if (snapshot == null)
+                throw new IOException("Missing or corrupt snapshot " + file);
+        }
+        return snapshot;
+    }
+
+    // Public Methods
+
+    @Override
+    public int count() throws IOException {
+        return snapshot().size();
+    }
+
+    @Override
+    public List<Setting> load(int start, int count) throws IOException {
+        SettingSnapshot source = snapshot();
+        List<Setting> settings = new ArrayList<>(count);
+        for (int i = start; i < start + count; i++) {
+            settings.add(source.load(i));
+        }
+        return settings;
+    }
+
+    @Override
+    public int positionOf(String key) throws IOException {
+        return snapshot().positionOf(key);
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.AdapterView;
+import android.widget.BaseAdapter;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.example.settingadapter.R;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Dialog to pick one of the options of a LIST setting.
+ * The dialog and its views are created once and reused for every setting.
+ * Options are bound lazily by a recycling list, can be filtered as the user types,
+ * and the current value is checked and scrolled to when the picker opens.
+ */
+public class OptionPicker {
+
+    // Constants
+    /** Lists with more options than this show the filter field. */
+    private static final int FILTER_THRESHOLD = 20;
+
+    // Private Variables
+    private final Context context;
+    private Dialog dialog;
+    private EditText filterView;
+    private ListView listView;
+    private final OptionAdapter adapter = new OptionAdapter();
+
+    private List<String> options;
+    private String[] lowerOptions;
+    private int currentIndex = -1;
+    private OnOptionSelectedListener listener;
+
+    /** Indexes of the options matching {@link #filter}, null when every option matches. */
+    private int[] matches;
+    private int matchCount;
+    private String filter = "";
+
+    // Constructors
+
+    /**
+     * @param context context of the activity the picker is shown in
+     */
+    public OptionPicker(@NonNull Context context) {
+        this.context = context;
+    }
+
+    // Private Methods
+
+    private void ensureDialog() {
+        if (dialog != null)
+            return;
+
+        dialog = new Dialog(context);
+        dialog.setContentView(R.layout.dialog_option_picker);
+        dialog.setCancelable(true);
+        filterView = (EditText) dialog.findViewById(R.id.dialog_option_picker_filter);
+        listView = (ListView) dialog.findViewById(R.id.dialog_option_picker_listView);
+        listView.setChoiceMode(AbsListView.CHOICE_MODE_SINGLE);
+        listView.setAdapter(adapter);
+        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
+                int index = adapter.optionIndex(position);
+                OnOptionSelectedListener selectedListener = listener;
+                dismiss();
+                if (selectedListener != null) {
+                    selectedListener.optionSelected(index, options.get(index));
+                }
+            }
+        });
+        filterView.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                setFilter(s.toString());
+            }
+        });
+    }
+
+    private String lowerOption(int index) {
+        String lower = lowerOptions[index];
+        if (lower == null) {
+            String option = options.get(index);
+            lower = option == null ? "" : option.toLowerCase(Locale.getDefault());
+            lowerOptions[index] = lower;
+        }
+        return lower;
+    }
+
+    /**
+     * Filter the options. A filter extending the previous one only rescans the previous matches.
+     */
+    private void setFilter(String text) {
+        String newFilter = text.trim().toLowerCase(Locale.getDefault());
+        if (newFilter.equals(filter))
+            return;
+
+        if (newFilter.isEmpty()) {
+            matches = null;
+        } else {
+            boolean narrowing = matches != null && newFilter.startsWith(filter);
+            int scanCount = narrowing ? matchCount : options.size();
+            int[] newMatches = matches != null ? matches : new int[options.size()];
+            int count = 0;
+            for (int i = 0; i < scanCount; i++) {
+                int index = narrowing ? matches[i] : i;
+                if (lowerOption(index).contains(newFilter)) {
+                    // writes never pass the read position, so the previous matches are filtered in place
+                    newMatches[count++] = index;
+                }
+            }
+            matches = newMatches;
+            matchCount = count;
+        }
+        filter = newFilter;
+        adapter.notifyDataSetChanged();
+        showCurrent();
+    }
+
+    /**
+     * Check the current value and scroll to it if it is among the shown options.
+     */
+    private void showCurrent() {
+        listView.clearChoices();
+        int position = adapter.positionOf(currentIndex);
+        if (position >= 0) {
+            listView.setItemChecked(position, true);
+            listView.setSelectionFromTop(position, 0);
+        } else {
+            listView.setSelection(0);
+        }
+    }
+
+    // Public Methods
+
+    /**
+     * Show the picker.
+     * @param options options for user to select
+     * @param current currently selected option, checked and scrolled to, may be null
+     * @param listener called with the picked option, the picker is dismissed before
+     */
+    public void show(@NonNull List<String> options, String current, OnOptionSelectedListener listener) {
+        ensureDialog();
+        if (this.options != options) {
+            // lowered options are kept while the same list, e.g. a shared OptionTable, is shown again
+            this.options = options;
+            this.lowerOptions = new String[options.size()];
+        }
+        this.listener = listener;
+        this.currentIndex = current == null ? -1 : options.indexOf(current);
+        this.matches = null;
+        this.filter = "";
+
+        filterView.setVisibility(options.size() > FILTER_THRESHOLD ? View.VISIBLE : View.GONE);
+        filterView.setText("");
+        adapter.notifyDataSetChanged();
+        showCurrent();
+        dialog.show();
+    }
+
+    /**
+     * Close the picker if it is showing.
+     */
+    public void dismiss() {
+        listener = null;
+        if (dialog != null && dialog.isShowing()) {
+            dialog.dismiss();
+        }
+    }
+
+    /**
+     * @return true if the picker is showing
+     */
+    public boolean isShowing() {
+        return dialog != null && dialog.isShowing();
+    }
+
+
+    public interface OnOptionSelectedListener {
+        /**
+         * Notify that the user picked an option.
+         * @param index index of the option in the shown list of options
+         * @param option the picked option
+         */
+        void optionSelected(int index, String option);
+    }
+
+    private class OptionAdapter extends BaseAdapter {
+        private LayoutInflater inflater;
+
+        int optionIndex(int position) {
+            return matches == null ? position : matches[position];
+        }
+
+        /**
+         * @return position of an option among the shown options or -1
+         */
+        int positionOf(int index) {
+            if (index < 0)
+                return -1;
+
+            if (matches == null)
+                return index;
+
+            // matches are in ascending option order
+            int position = Arrays.binarySearch(matches, 0, matchCount, index);
+            return position < 0 ? -1 : position;
+        }
+
+        @Override
+        public int getCount() {
+            if (options == null)
+                return 0;
+
+            return matches == null ? options.size() : matchCount;
+        }
+
+        @Override
+        public String getItem(int position) {
+            return options.get(optionIndex(position));
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return optionIndex(position);
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView textView = (TextView) convertView;
+            if (textView == null) {
+                if (inflater == null) {
+                    inflater = LayoutInflater.from(parent.getContext());
+                }
+                textView = (TextView) inflater.inflate(android.R.layout.simple_list_item_single_choice, parent, false);
+            }
+            textView.setText(getItem(position));
+            return textView;
+        }
+    }
+}
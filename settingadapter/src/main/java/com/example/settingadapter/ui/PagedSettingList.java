@@ -0,0 +1,401 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.example.settingadapter.model.Setting;
+import com.example.settingadapter.store.SettingDataSource;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Settings of a {@link SettingDataSource}, loaded page by page on a background thread.
+ * Positions whose page is not loaded yet read as null and request the page; the adapter shows
+ * placeholders for them until {@link Callback#onRangeLoaded(int, int)} is called.
+ * At most a fixed number of pages is kept, the least recently used page is evicted first.
+ * Settings changed by the user are kept across evictions, unless the {@link ValueSource}
+ * gives them their value again when their page loads.
+ * Must be used on the main thread.
+ */
+class PagedSettingList {
+
+    // Constants
+    private static final String TAG = "PagedSettingList";
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int DEFAULT_MAX_PAGES = 8;
+
+    // Private Variables
+    private final SettingDataSource source;
+    private final Callback callback;
+    private final int pageSize;
+    private final int maxPages;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor;
+
+    private final Map<Integer, Setting[]> pages;
+    /** Same pages as {@link #pages}, read without changing their LRU order. */
+    private final Map<Integer, Setting[]> loadedPages = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    /** Positions of the settings in loaded pages by key. */
+    private final Map<String, Integer> loadedPositions = new HashMap<>();
+    private final Map<String, Setting> modified = new HashMap<>();
+    private ValueSource valueSource;
+
+    private int size = 0;
+    /** Incremented on every refresh, results of older loads are dropped. */
+    private int generation = 0;
+
+    // Constructors
+
+    PagedSettingList(@NonNull SettingDataSource source, @NonNull Callback callback, int pageSize, final int maxPages) {
+        this.source = source;
+        this.callback = callback;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.pages = new LinkedHashMap<Integer, Setting[]>(maxPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Setting[]> eldest) {
+                if (size() <= PagedSettingList.this.maxPages)
+                    return false;
+
+                loadedPages.remove(eldest.getKey());
+                for (Setting setting : eldest.getValue()) {
+                    if (setting.getKey() != null) {
+                        loadedPositions.remove(setting.getKey());
+                    }
+                }
+                return true;
+            }
+        };
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        refresh();
+    }
+
+    // Private Methods
+
+    private void loadPage(final int page) {
+        if (page < 0 || page * pageSize >= size || pages.containsKey(page) || !loading.add(page))
+            return;
+
+        final int loadGeneration = generation;
+        final int start = page * pageSize;
+        final int count = Math.min(pageSize, size - start);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Setting> loaded = null;
+                try {
+                    loaded = source.load(start, count);
+                } catch (IOException exception) {
+                    Log.w(TAG, "Could not load settings " + start + " to " + (start + count), exception);
+                }
+                final List<Setting> result = loaded;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration != generation)
+                            return;
+
+                        // a failed page is requested again the next time it is shown
+                        loading.remove(page);
+                        if (result != null) {
+                            onPageLoaded(page, result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int page, List<Setting> loaded) {
+        Setting[] settings = new Setting[Math.min(loaded.size(), pageSize)];
+        for (int i = 0; i < settings.length; i++) {
+            Setting setting = loaded.get(i);
+            String key = setting.getKey();
+            if (key == null) {
+                settings[i] = setting;
+                continue;
+            }
+
+            Setting changed = modified.get(key);
+            settings[i] = changed != null ? changed : setting;
+            String value = changed == null && valueSource != null ? valueSource.valueOf(key) : null;
+            if (value != null && !value.equals(setting.getValue())) {
+                setting.setValue(value);
+            }
+            loadedPositions.put(key, page * pageSize + i);
+        }
+        pages.put(page, settings);
+        loadedPages.put(page, settings);
+        callback.onRangeLoaded(page * pageSize, settings.length);
+    }
+
+    // Public Methods
+
+    /**
+     * Drop every page and reload the size from the source.
+     */
+    void refresh() {
+        final int loadGeneration = ++generation;
+        pages.clear();
+        loadedPages.clear();
+        loadedPositions.clear();
+        loading.clear();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int count = 0;
+                try {
+                    count = source.count();
+                } catch (IOException exception) {
+                    Log.w(TAG, "Could not count settings", exception);
+                }
+                final int result = count;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration != generation)
+                            return;
+
+                        size = result;
+                        callback.onSizeChanged(result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return number of settings, 0 until the source was counted
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get a setting, requesting its page if it is not loaded.
+     * The following page is requested as well once the position is past the middle of its page.
+     * @param position position of the setting
+     * @return the setting or null while its page is loading
+     */
+    Setting get(int position) {
+        if (position < 0 || position >= size)
+            return null;
+
+        int page = position / pageSize;
+        if (position % pageSize > pageSize / 2) {
+            loadPage(page + 1);
+        } else if (position % pageSize < pageSize / 4) {
+            loadPage(page - 1);
+        }
+
+        Setting[] settings = pages.get(page);
+        if (settings == null) {
+            loadPage(page);
+            return null;
+        }
+        int index = position % pageSize;
+        return index < settings.length ? settings[index] : null;
+    }
+
+    /**
+     * Get a setting only if its page is loaded, without requesting pages or marking the page as used.
+     * @param position position of the setting
+     * @return the setting or null if its page is not loaded
+     */
+    Setting peek(int position) {
+        if (position < 0 || position >= size)
+            return null;
+
+        Setting[] settings = loadedPages.get(position / pageSize);
+        int index = position % pageSize;
+        return settings != null && index < settings.length ? settings[index] : null;
+    }
+
+    /**
+     * Skip the pages that are not loaded.
+     * @param position first position to look at
+     * @param end position to stop at
+     * @return the position if its page is loaded, else the start of the next loaded page, at most end
+     */
+    int nextLoaded(int position, int end) {
+        int page = position / pageSize;
+        while (position < end && !loadedPages.containsKey(page)) {
+            page++;
+            position = page * pageSize;
+        }
+        return Math.min(position, end);
+    }
+
+    /**
+     * @param start first position of the range
+     * @param end position after the range
+     * @return true if the pages of every position in the range are loaded
+     */
+    boolean isLoaded(int start, int end) {
+        if (start >= end)
+            return true;
+
+        for (int page = start / pageSize; page * pageSize < end; page++) {
+            if (!loadedPages.containsKey(page))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Find a loaded setting by key.
+     * @param key {@link Setting#getKey()}
+     * @return position of the setting or -1 if it is not loaded
+     */
+    int positionOfLoaded(String key) {
+        if (key == null)
+            return -1;
+
+        Integer position = loadedPositions.get(key);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Find the position of a setting by key in the source and load its page.
+     * @param key {@link Setting#getKey()}
+     * @param listener called on the main thread with the position, -1 if not found
+     */
+    void findPosition(final String key, @NonNull final OnPositionFoundListener listener) {
+        int loaded = positionOfLoaded(key);
+        if (loaded >= 0) {
+            listener.onPositionFound(loaded);
+            return;
+        }
+
+        final int loadGeneration = generation;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int position = -1;
+                try {
+                    position = source.positionOf(key);
+                } catch (IOException exception) {
+                    Log.w(TAG, "Could not look up " + key, exception);
+                }
+                final int result = position;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration != generation || result >= size) {
+                            listener.onPositionFound(-1);
+                            return;
+                        }
+                        if (result >= 0) {
+                            loadPage(result / pageSize);
+                        }
+                        listener.onPositionFound(result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Keep a setting changed by the user, so its value survives the eviction of its page.
+     * Settings the {@link ValueSource} gives the same value are not kept, their page loads it again.
+     * @param setting the changed {@link Setting}
+     */
+    void onChanged(Setting setting) {
+        if (setting == null || setting.getKey() == null)
+            return;
+
+        String key = setting.getKey();
+        if (valueSource != null && setting.getValue().equals(valueSource.valueOf(key))) {
+            modified.remove(key);
+        } else {
+            modified.put(key, setting);
+        }
+    }
+
+    /**
+     * @param valueSource values applied to settings when their page loads, null to show the loaded values
+     */
+    void setValueSource(ValueSource valueSource) {
+        this.valueSource = valueSource;
+    }
+
+    /**
+     * Stop loading, pending loads are discarded.
+     */
+    void close() {
+        generation++;
+        executor.shutdownNow();
+    }
+
+
+    interface Callback {
+        /**
+         * @param size number of settings in the source
+         */
+        void onSizeChanged(int size);
+
+        /**
+         * Settings that were shown as placeholders are loaded.
+         * @param start position of the first loaded setting
+         * @param count number of loaded settings
+         */
+        void onRangeLoaded(int start, int count);
+    }
+
+    interface ValueSource {
+        /**
+         * @param key {@link Setting#getKey()}
+         * @return value to show instead of the loaded one, or null to keep the loaded value
+         */
+        String valueOf(String key);
+    }
+
+    interface OnPositionFoundListener {
+        /**
+         * @param position position of the setting or -1 if not found
+         */
+        void onPositionFound(int position);
+    }
+}
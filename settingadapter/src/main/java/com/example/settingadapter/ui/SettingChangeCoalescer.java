@@ -0,0 +1,179 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.settingadapter.model.Setting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Batches rapid changes per setting key and delivers only the latest value
+ * once no change arrived for the quiet period, or earlier when flushed.
+ * Quiet periods are timed on the main looper, submitting never waits on delivery.
+ * Values are delivered on the main thread, or on the delivery executor when one is set
+ * so a slow sink does not block the main thread.
+ * Only keys with a waiting value are kept.
+ */
+class SettingChangeCoalescer {
+
+    // Private Variables
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Pending> pendingChanges = new HashMap<>();
+    private final Sink sink;
+    private long quietPeriodMillis;
+    private Executor deliveryExecutor;
+
+    // Constructors
+
+    SettingChangeCoalescer(Sink sink, long quietPeriodMillis) {
+        this.sink = sink;
+        this.quietPeriodMillis = quietPeriodMillis;
+    }
+
+    // Public Methods
+
+    /**
+     * @param quietPeriodMillis time without changes before a value is delivered, 0 to disable
+     */
+    void setQuietPeriod(long quietPeriodMillis) {
+        this.quietPeriodMillis = quietPeriodMillis;
+        if (quietPeriodMillis <= 0) {
+            flushAll();
+        }
+    }
+
+    long getQuietPeriod() {
+        return quietPeriodMillis;
+    }
+
+    boolean isEnabled() {
+        return quietPeriodMillis > 0;
+    }
+
+    /**
+     * @param executor executor the sink is called on, a single thread keeps the values of a key in order;
+     *                 null to call it on the main thread
+     */
+    void setDeliveryExecutor(Executor executor) {
+        this.deliveryExecutor = executor;
+    }
+
+    /**
+     * Queue a change, replacing any value still waiting for the same key.
+     * @param type {@link Setting#getType()}
+     * @param key {@link Setting#getKey()}
+     * @param value new value
+     * @param setting the changed setting, handed to the sink
+     */
+    void submit(int type, String key, String value, Setting setting) {
+        Pending pending = pendingChanges.get(key);
+        if (pending == null) {
+            pending = new Pending(key);
+            pendingChanges.put(key, pending);
+        } else {
+            handler.removeCallbacks(pending);
+        }
+
+        pending.type = type;
+        pending.value = value;
+        pending.setting = setting;
+        handler.postDelayed(pending, quietPeriodMillis);
+    }
+
+    /**
+     * Deliver the waiting value for a key right away, e.g. when its input loses focus.
+     * @param key {@link Setting#getKey()}
+     */
+    void flush(String key) {
+        Pending pending = pendingChanges.get(key);
+        if (pending != null) {
+            handler.removeCallbacks(pending);
+            pending.run();
+        }
+    }
+
+    /**
+     * Deliver every waiting value right away.
+     */
+    void flushAll() {
+        if (pendingChanges.isEmpty())
+            return;
+
+        for (Pending pending : new ArrayList<>(pendingChanges.values())) {
+            handler.removeCallbacks(pending);
+            pending.run();
+        }
+    }
+
+
+    interface Sink {
+        /**
+         * Receive the latest value of a key, on the delivery executor if one is set.
+         * @param type {@link Setting#getType()}
+         * @param key {@link Setting#getKey()}
+         * @param value latest value
+         * @param setting the changed setting, a copy no other thread changes when delivered on the executor
+         */
+        void deliver(int type, String key, String value, Setting setting);
+    }
+
+    /**
+     * Latest waiting value of a key, dropped once it is delivered.
+     */
+    private class Pending implements Runnable {
+        final String key;
+        int type;
+        String value;
+        Setting setting;
+
+        Pending(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            pendingChanges.remove(key);
+            Executor executor = deliveryExecutor;
+            if (executor == null) {
+                sink.deliver(type, key, value, setting);
+                return;
+            }
+            // the main thread keeps changing the setting, the executor gets a copy holding the delivered value
+            final Setting copy = setting == null ? null
+                    : new Setting(type, key, setting.getTitle(), value, setting.getOptions());
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sink.deliver(type, key, value, copy);
+                }
+            });
+        }
+    }
+}
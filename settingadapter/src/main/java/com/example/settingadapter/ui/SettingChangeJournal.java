@@ -0,0 +1,179 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.os.SystemClock;
+
+import com.example.settingadapter.model.Setting;
+
+/**
+ * Bounded undo and redo journal of value changes.
+ * Entries are kept in a ring buffer of parallel arrays holding the key, the old and the new value;
+ * once full, recording a change overwrites the oldest entry, so memory use does not grow with the session.
+ */
+class SettingChangeJournal {
+
+    // Constants
+    static final int DEFAULT_CAPACITY = 100;
+
+    // Private Variables
+    private final String[] entryKeys;
+    private final String[] oldValues;
+    private final String[] newValues;
+
+    /** Ring index of the oldest entry. */
+    private int start = 0;
+    /** Number of entries held, undone ones included. */
+    private int count = 0;
+    /** Number of entries applied, entries from here on can be redone. */
+    private int cursor = 0;
+    /** {@link SystemClock#uptimeMillis()} of the last recorded or merged change. */
+    private long lastRecordMillis = 0;
+
+    // Constructors
+
+    /**
+     * @param capacity maximum number of changes kept
+     */
+    SettingChangeJournal(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        entryKeys = new String[capacity];
+        oldValues = new String[capacity];
+        newValues = new String[capacity];
+    }
+
+    // Private Methods
+
+    private int slot(int entry) {
+        return (start + entry) % entryKeys.length;
+    }
+
+    // Public Methods
+
+    /**
+     * Record a change, dropping every change that could be redone.
+     * @param key {@link Setting#getKey()}
+     * @param oldValue value before the change
+     * @param newValue value after the change
+     * @param mergeWindowMillis fold the change into the last one when it changed the same key
+     *                          less than this long ago, e.g. for every character typed into an input;
+     *                          0 to never merge
+     */
+    void record(String key, String oldValue, String newValue, long mergeWindowMillis) {
+        long now = SystemClock.uptimeMillis();
+        boolean recent = now - lastRecordMillis < mergeWindowMillis;
+        lastRecordMillis = now;
+        if (recent && cursor > 0 && cursor == count && key.equals(entryKeys[slot(cursor - 1)])) {
+            newValues[slot(cursor - 1)] = newValue;
+            return;
+        }
+
+        // drop the changes that could be redone
+        for (int i = cursor; i < count; i++) {
+            entryKeys[slot(i)] = null;
+            oldValues[slot(i)] = null;
+            newValues[slot(i)] = null;
+        }
+        count = cursor;
+        if (count == entryKeys.length) {
+            // overwrite the oldest change
+            start = slot(1);
+            count--;
+        }
+
+        int slot = slot(count);
+        entryKeys[slot] = key;
+        oldValues[slot] = oldValue;
+        newValues[slot] = newValue;
+        count++;
+        cursor = count;
+    }
+
+    /**
+     * @return true if a change can be undone
+     */
+    boolean canUndo() {
+        return cursor > 0;
+    }
+
+    /**
+     * @return true if an undone change can be redone
+     */
+    boolean canRedo() {
+        return cursor < count;
+    }
+
+    /**
+     * Step back over the last applied change.
+     * @return ring slot of the change, read with {@link #keyAt(int)}, {@link #oldValueAt(int)}
+     *         and {@link #newValueAt(int)}, or -1 if there is nothing to undo
+     */
+    int undo() {
+        if (cursor == 0)
+            return -1;
+
+        cursor--;
+        return slot(cursor);
+    }
+
+    /**
+     * Step forward over the last undone change.
+     * @return ring slot of the change or -1 if there is nothing to redo
+     */
+    int redo() {
+        if (cursor == count)
+            return -1;
+
+        cursor++;
+        return slot(cursor - 1);
+    }
+
+    String keyAt(int slot) {
+        return entryKeys[slot];
+    }
+
+    String oldValueAt(int slot) {
+        return oldValues[slot];
+    }
+
+    String newValueAt(int slot) {
+        return newValues[slot];
+    }
+
+    /**
+     * Forget every change.
+     */
+    void clear() {
+        for (int i = 0; i < entryKeys.length; i++) {
+            entryKeys[i] = null;
+            oldValues[i] = null;
+            newValues[i] = null;
+        }
+        start = 0;
+        count = 0;
+        cursor = 0;
+    }
+}
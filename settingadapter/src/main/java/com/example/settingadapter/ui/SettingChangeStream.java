@@ -0,0 +1,370 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import com.example.settingadapter.model.Setting;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stream of setting changes with any number of subscribers, each watching a key, a key prefix or a type.
+ * Subscribers are kept in copy-on-write arrays per key, prefix and type read without locking, so publishing
+ * a change only visits the subscribers that match it. Weak subscriptions do not keep their
+ * listener alive and are dropped once it is collected. A key, prefix or type is forgotten
+ * when its last subscriber leaves, so subscription churn does not slow publishing down.
+ * One stream can be shared by several {@link SettingItemFragment}s, see
+ * {@link SettingItemFragment#setChangeStream(SettingChangeStream)}.
+ */
+public class SettingChangeStream {
+
+    // Constants
+    private static final String TAG = "SettingChangeStream";
+    /** Deliver on the main thread. */
+    public static final int DELIVER_MAIN = 0;
+    /** Deliver on a background thread shared by all subscribers, in publishing order. */
+    public static final int DELIVER_BACKGROUND = 1;
+    /** Deliver on the publishing thread, before publish returns. */
+    public static final int DELIVER_IMMEDIATE = 2;
+
+    // Private Variables
+    private final ConcurrentMap<String, SubscriberSet> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SubscriberSet> byPrefix = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, SubscriberSet> byType = new ConcurrentHashMap<>();
+    /** Sorted lengths of the subscribed prefixes, so publishing only looks up prefixes that can exist. */
+    private final AtomicReference<int[]> prefixLengths = new AtomicReference<>(new int[0]);
+    /** Guards subscribing and unsubscribing, publishing reads without it. */
+    private final Object subscriptionLock = new Object();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile ExecutorService backgroundExecutor;
+
+    // Constructors
+
+    public SettingChangeStream() {
+    }
+
+    // Private Methods
+
+    /**
+     * Called with the subscription lock held.
+     */
+    private void addPrefixLength(int length) {
+        int[] lengths = prefixLengths.get();
+        int index = Arrays.binarySearch(lengths, length);
+        if (index >= 0)
+            return;
+
+        int insert = -index - 1;
+        int[] updated = new int[lengths.length + 1];
+        System.arraycopy(lengths, 0, updated, 0, insert);
+        updated[insert] = length;
+        System.arraycopy(lengths, insert, updated, insert + 1, lengths.length - insert);
+        prefixLengths.set(updated);
+    }
+
+    /**
+     * Drop a prefix length once no subscribed prefix has it. Called with the subscription lock held.
+     */
+    private void removePrefixLength(int length) {
+        for (String prefix : byPrefix.keySet()) {
+            if (prefix.length() == length)
+                return;
+        }
+
+        int[] lengths = prefixLengths.get();
+        int index = Arrays.binarySearch(lengths, length);
+        if (index < 0)
+            return;
+
+        int[] updated = new int[lengths.length - 1];
+        System.arraycopy(lengths, 0, updated, 0, index);
+        System.arraycopy(lengths, index + 1, updated, index, lengths.length - index - 1);
+        prefixLengths.set(updated);
+    }
+
+    private <K> Subscription subscribe(ConcurrentMap<K, SubscriberSet> map, K key, int delivery, boolean weak,
+                                       SettingItemAdapter.OnSettingChangeListener listener) {
+        synchronized (subscriptionLock) {
+            SubscriberSet set = map.get(key);
+            if (set == null) {
+                set = new SubscriberSet();
+                map.put(key, set);
+                if (map == byPrefix) {
+                    addPrefixLength(((String) key).length());
+                }
+            }
+            Subscription subscription = new Subscription(this, map, key, set, delivery, weak, listener);
+            set.add(subscription);
+            return subscription;
+        }
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        synchronized (subscriptionLock) {
+            SubscriberSet set = subscription.set;
+            set.remove(subscription);
+            if (set.subscriptions.get().length > 0 || !subscription.map.remove(subscription.key, set))
+                return;
+
+            if (subscription.map == byPrefix) {
+                removePrefixLength(((String) subscription.key).length());
+            }
+        }
+    }
+
+    private ExecutorService backgroundExecutor() {
+        ExecutorService executor = backgroundExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = backgroundExecutor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            Thread thread = new Thread(runnable, TAG);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    backgroundExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private void dispatch(SubscriberSet set, final int type, final String key, final String value) {
+        if (set == null)
+            return;
+
+        for (Subscription subscription : set.subscriptions.get()) {
+            final SettingItemAdapter.OnSettingChangeListener listener = subscription.listener();
+            if (listener == null) {
+                // weakly held listener was collected
+                subscription.unsubscribe();
+                continue;
+            }
+
+            switch (subscription.delivery) {
+                case DELIVER_IMMEDIATE:
+                    listener.settingItemChanged(type, key, value);
+                    break;
+                case DELIVER_BACKGROUND:
+                    backgroundExecutor().execute(new Delivery(subscription, type, key, value));
+                    break;
+                default:
+                    if (Looper.myLooper() == Looper.getMainLooper()) {
+                        listener.settingItemChanged(type, key, value);
+                    } else {
+                        mainHandler.post(new Delivery(subscription, type, key, value));
+                    }
+                    break;
+            }
+        }
+    }
+
+    // Public Methods
+
+    /**
+     * Watch one key, delivered on the main thread.
+     * @param key {@link Setting#getKey()}
+     * @param listener receives the changes
+     * @return subscription to cancel
+     */
+    public Subscription subscribeKey(@NonNull String key, @NonNull SettingItemAdapter.OnSettingChangeListener listener) {
+        return subscribeKey(key, DELIVER_MAIN, false, listener);
+    }
+
+    /**
+     * Watch one key.
+     * @param key {@link Setting#getKey()}
+     * @param delivery {@link #DELIVER_MAIN}, {@link #DELIVER_BACKGROUND} or {@link #DELIVER_IMMEDIATE}
+     * @param weak true to hold the listener weakly, the caller must keep it alive
+     * @param listener receives the changes
+     * @return subscription to cancel
+     */
+    public Subscription subscribeKey(@NonNull String key, int delivery, boolean weak,
+                                     @NonNull SettingItemAdapter.OnSettingChangeListener listener) {
+        return subscribe(byKey, key, delivery, weak, listener);
+    }
+
+    /**
+     * Watch every key starting with a prefix, e.g. "network." for a group of settings.
+     * An empty prefix watches every key.
+     * @param prefix start of the keys
+     * @param delivery {@link #DELIVER_MAIN}, {@link #DELIVER_BACKGROUND} or {@link #DELIVER_IMMEDIATE}
+     * @param weak true to hold the listener weakly, the caller must keep it alive
+     * @param listener receives the changes
+     * @return subscription to cancel
+     */
+    public Subscription subscribePrefix(@NonNull String prefix, int delivery, boolean weak,
+                                        @NonNull SettingItemAdapter.OnSettingChangeListener listener) {
+        return subscribe(byPrefix, prefix, delivery, weak, listener);
+    }
+
+    /**
+     * Watch every setting of a type.
+     * @param type {@link Setting#getType()}
+     * @param delivery {@link #DELIVER_MAIN}, {@link #DELIVER_BACKGROUND} or {@link #DELIVER_IMMEDIATE}
+     * @param weak true to hold the listener weakly, the caller must keep it alive
+     * @param listener receives the changes
+     * @return subscription to cancel
+     */
+    public Subscription subscribeType(int type, int delivery, boolean weak,
+                                      @NonNull SettingItemAdapter.OnSettingChangeListener listener) {
+        return subscribe(byType, type, delivery, weak, listener);
+    }
+
+    /**
+     * Deliver a change to every matching subscriber. Can be called from any thread.
+     * A subscriber matching by several of key, prefix and type receives the change once per match.
+     * @param type {@link Setting#getType()}
+     * @param key {@link Setting#getKey()}
+     * @param value new value
+     */
+    public void publish(int type, String key, String value) {
+        dispatch(byType.get(type), type, key, value);
+        if (key == null)
+            return;
+
+        dispatch(byKey.get(key), type, key, value);
+        for (int length : prefixLengths.get()) {
+            if (length > key.length())
+                break;
+
+            dispatch(byPrefix.get(key.substring(0, length)), type, key, value);
+        }
+    }
+
+
+    /**
+     * Subscription to a {@link SettingChangeStream}.
+     */
+    public static final class Subscription {
+        private final SettingChangeStream stream;
+        private final ConcurrentMap<?, SubscriberSet> map;
+        private final Object key;
+        private final SubscriberSet set;
+        private final int delivery;
+        private final SettingItemAdapter.OnSettingChangeListener strongListener;
+        private final WeakReference<SettingItemAdapter.OnSettingChangeListener> weakListener;
+        private volatile boolean active = true;
+
+        private Subscription(SettingChangeStream stream, ConcurrentMap<?, SubscriberSet> map, Object key,
+                             SubscriberSet set, int delivery, boolean weak,
+                             SettingItemAdapter.OnSettingChangeListener listener) {
+            this.stream = stream;
+            this.map = map;
+            this.key = key;
+            this.set = set;
+            this.delivery = delivery;
+            this.strongListener = weak ? null : listener;
+            this.weakListener = weak ? new WeakReference<>(listener) : null;
+        }
+
+        SettingItemAdapter.OnSettingChangeListener listener() {
+            if (!active)
+                return null;
+
+            return strongListener != null ? strongListener : weakListener.get();
+        }
+
+        /**
+         * Stop receiving changes, also changes already queued for delivery.
+         */
+        public void unsubscribe() {
+            active = false;
+            stream.unsubscribe(this);
+        }
+    }
+
+    /**
+     * Copy-on-write array of subscriptions, changed with the subscription lock held.
+     */
+    private static final class SubscriberSet {
+        private static final Subscription[] EMPTY = new Subscription[0];
+
+        final AtomicReference<Subscription[]> subscriptions = new AtomicReference<>(EMPTY);
+
+        void add(Subscription subscription) {
+            Subscription[] current = subscriptions.get();
+            Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            subscriptions.set(updated);
+        }
+
+        void remove(Subscription subscription) {
+            Subscription[] current = subscriptions.get();
+            int index = -1;
+            for (int i = 0; i < current.length && index < 0; i++) {
+                if (current[i] == subscription) {
+                    index = i;
+                }
+            }
+            if (index < 0)
+                return;
+
+            Subscription[] updated = current.length == 1 ? EMPTY : new Subscription[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            subscriptions.set(updated);
+        }
+    }
+
+    /**
+     * A change queued for a subscriber on another thread.
+     */
+    private static final class Delivery implements Runnable {
+        private final Subscription subscription;
+        private final int type;
+        private final String key;
+        private final String value;
+
+        Delivery(Subscription subscription, int type, String key, String value) {
+            this.subscription = subscription;
+            this.type = type;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public void run() {
+            SettingItemAdapter.OnSettingChangeListener listener = subscription.listener();
+            if (listener != null) {
+                listener.settingItemChanged(type, key, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.support.v7.util.DiffUtil;
+
+import com.example.settingadapter.model.Setting;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Diff callback comparing two {@link Snapshot}s of a setting list.
+ * Items are matched by type and stable id (see {@link SettingIds})
+ * and considered unchanged when title and value are equal.
+ */
+class SettingDiffCallback extends DiffUtil.Callback {
+
+    // Private Variables
+    private final Snapshot oldSnapshot;
+    private final Snapshot newSnapshot;
+
+    // Constructors
+
+    SettingDiffCallback(Snapshot oldSnapshot, Snapshot newSnapshot) {
+        this.oldSnapshot = oldSnapshot;
+        this.newSnapshot = newSnapshot;
+    }
+
+    // Private Methods
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    // Public Methods
+
+    @Override
+    public int getOldListSize() {
+        return oldSnapshot.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newSnapshot.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldSnapshot.types[oldItemPosition] == newSnapshot.types[newItemPosition]
+                && oldSnapshot.ids[oldItemPosition] == newSnapshot.ids[newItemPosition];
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return equals(oldSnapshot.values[oldItemPosition], newSnapshot.values[newItemPosition])
+                && equals(oldSnapshot.titles[oldItemPosition], newSnapshot.titles[newItemPosition]);
+    }
+
+
+    /**
+     * Copy of the fields used for diffing, taken when a list is submitted.
+     * Settings are mutated in place by {@link SettingItemFragment}, so the
+     * adapter cannot diff against the previous {@link Setting} instances.
+     * Single inserts and removes splice the arrays in place instead of copying the list again.
+     */
+    static class Snapshot {
+
+        int[] types;
+        String[] keys;
+        String[] titles;
+        String[] values;
+        long[] ids;
+        private int size;
+
+        private Snapshot(int size) {
+            types = new int[size];
+            keys = new String[size];
+            titles = new String[size];
+            values = new String[size];
+            ids = new long[size];
+            this.size = size;
+        }
+
+        static Snapshot of(List<Setting> settingList) {
+            if (settingList == null || settingList.isEmpty())
+                return new Snapshot(0);
+
+            Snapshot snapshot = new Snapshot(settingList.size());
+            for (int i = 0; i < settingList.size(); i++) {
+                Setting setting = settingList.get(i);
+                snapshot.types[i] = setting.getType();
+                snapshot.keys[i] = setting.getKey();
+                snapshot.titles[i] = setting.getTitle();
+                snapshot.values[i] = setting.getValue();
+            }
+            SettingIds.assign(snapshot.types, snapshot.keys, snapshot.titles, snapshot.ids);
+            return snapshot;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= types.length)
+                return;
+
+            int grown = Math.max(capacity, types.length + (types.length >> 1));
+            types = Arrays.copyOf(types, grown);
+            keys = Arrays.copyOf(keys, grown);
+            titles = Arrays.copyOf(titles, grown);
+            values = Arrays.copyOf(values, grown);
+            ids = Arrays.copyOf(ids, grown);
+        }
+
+        /**
+         * Splice settings into the snapshot, they get ids distinct from every other row.
+         * Collisions are found in a hashed set of the current ids, so k rows cost O(n + k).
+         * @param position position of the first inserted setting
+         * @param settings inserted settings
+         */
+        void insert(int position, List<Setting> settings) {
+            int count = settings.size();
+            SettingIds.IdSet assigned = new SettingIds.IdSet(size + count);
+            for (int i = 0; i < size; i++) {
+                assigned.add(ids[i]);
+            }
+            ensureCapacity(size + count);
+            int tail = size - position;
+            System.arraycopy(types, position, types, position + count, tail);
+            System.arraycopy(keys, position, keys, position + count, tail);
+            System.arraycopy(titles, position, titles, position + count, tail);
+            System.arraycopy(values, position, values, position + count, tail);
+            System.arraycopy(ids, position, ids, position + count, tail);
+            size += count;
+
+            for (int i = 0; i < count; i++) {
+                Setting setting = settings.get(i);
+                int row = position + i;
+                types[row] = setting.getType();
+                keys[row] = setting.getKey();
+                titles[row] = setting.getTitle();
+                values[row] = setting.getValue();
+                ids[row] = assigned.addUnique(SettingIds.forRow(types[row], keys[row], titles[row]));
+            }
+        }
+
+        /**
+         * Cut rows out of the snapshot.
+         * @param position position of the first removed row
+         * @param count number of removed rows
+         */
+        void remove(int position, int count) {
+            int tail = size - position - count;
+            System.arraycopy(types, position + count, types, position, tail);
+            System.arraycopy(keys, position + count, keys, position, tail);
+            System.arraycopy(titles, position + count, titles, position, tail);
+            System.arraycopy(values, position + count, values, position, tail);
+            System.arraycopy(ids, position + count, ids, position, tail);
+            size -= count;
+            // drop references to the removed strings
+            Arrays.fill(keys, size, size + count, null);
+            Arrays.fill(titles, size, size + count, null);
+            Arrays.fill(values, size, size + count, null);
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.example.settingadapter.model.Setting;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stable 64 bit item ids for settings.
+ * Keyed settings hash their key, keyless HEADER/FOOTER rows hash their type,
+ * title and how many identical rows came before them.
+ */
+final class SettingIds {
+
+    // Constants
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Constructors
+
+    private SettingIds() { }
+
+    // Private Methods
+
+    private static long hash(long seed, String text) {
+        long hash = seed;
+        if (text != null) {
+            for (int i = 0; i < text.length(); i++) {
+                hash ^= text.charAt(i);
+                hash *= FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Murmur3 finalizer, spreads the FNV bits across the whole long.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb53fe1a85ec3L;
+        hash ^= hash >>> 33;
+        return hash == RecyclerView.NO_ID ? 0 : hash;
+    }
+
+    private static boolean isKeyless(String key) {
+        return key == null || key.isEmpty();
+    }
+
+    // Public Methods
+
+    /**
+     * Id for a keyed setting.
+     * @param key {@link Setting#getKey()}
+     * @return id, never {@link RecyclerView#NO_ID}
+     */
+    static long forKey(String key) {
+        return mix(hash(FNV_OFFSET, key));
+    }
+
+    /**
+     * Id for a keyless row.
+     * @param type {@link Setting#getType()}
+     * @param title {@link Setting#getTitle()}
+     * @param occurrence number of earlier rows with the same type and title
+     * @return id, never {@link RecyclerView#NO_ID}
+     */
+    static long forKeyless(int type, String title, int occurrence) {
+        long hash = (FNV_OFFSET ^ (type + 1)) * FNV_PRIME;
+        hash = (hash ^ occurrence) * FNV_PRIME;
+        return mix(hash(hash, title));
+    }
+
+    /**
+     * Id to start probing from for a row inserted into an existing list,
+     * keyless rows use occurrence 0 since counting the rows before them would need a scan.
+     * @param type {@link Setting#getType()}
+     * @param key {@link Setting#getKey()}
+     * @param title {@link Setting#getTitle()}
+     * @return id, never {@link RecyclerView#NO_ID}
+     */
+    static long forRow(int type, String key, String title) {
+        return isKeyless(key) ? forKeyless(type, title, 0) : forKey(key);
+    }
+
+    /**
+     * @param id colliding id
+     * @return id to probe after it, never {@link RecyclerView#NO_ID}
+     */
+    static long next(long id) {
+        return id + 1 == RecyclerView.NO_ID ? 0 : id + 1;
+    }
+
+    /**
+     * Fill ids for every row of a list. Colliding ids are resolved by linear probing
+     * so every row in the list gets a distinct id.
+     * @param types {@link Setting#getType()} per row
+     * @param keys {@link Setting#getKey()} per row
+     * @param titles {@link Setting#getTitle()} per row
+     * @param ids output array, same length as the inputs
+     */
+    static void assign(int[] types, String[] keys, String[] titles, long[] ids) {
+        int size = ids.length;
+        IdSet assigned = new IdSet(size);
+        Map<String, int[]> keylessCounts = null;
+
+        for (int i = 0; i < size; i++) {
+            long id;
+            if (isKeyless(keys[i])) {
+                if (keylessCounts == null)
+                    keylessCounts = new HashMap<>();
+                String countKey = types[i] + ":" + titles[i];
+                int[] occurrence = keylessCounts.get(countKey);
+                if (occurrence == null) {
+                    occurrence = new int[1];
+                    keylessCounts.put(countKey, occurrence);
+                }
+                id = forKeyless(types[i], titles[i], occurrence[0]++);
+            } else {
+                id = forKey(keys[i]);
+            }
+            ids[i] = assigned.addUnique(id);
+        }
+    }
+
+
+    /**
+     * Open addressing set of assigned ids, sized once and kept under half full.
+     */
+    static final class IdSet {
+        private final long[] table;
+        private final boolean[] used;
+        private final int mask;
+
+        /**
+         * @param capacity maximum number of ids added
+         */
+        IdSet(int capacity) {
+            int slots = Integer.highestOneBit(Math.max(capacity, 1) * 2) << 1;
+            table = new long[slots];
+            used = new boolean[slots];
+            mask = slots - 1;
+        }
+
+        /**
+         * @param id id to add
+         * @return true if the id was added, false if it was in the set already
+         */
+        boolean add(long id) {
+            int slot = (int) mix(id) & mask;
+            while (used[slot]) {
+                if (table[slot] == id)
+                    return false;
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            table[slot] = id;
+            return true;
+        }
+
+        /**
+         * Add an id, probing the next ids while it collides with an earlier one.
+         * @param id preferred id
+         * @return the id that was added
+         */
+        long addUnique(long id) {
+            while (!add(id)) {
+                id = next(id);
+            }
+            return id;
+        }
+    }
+}
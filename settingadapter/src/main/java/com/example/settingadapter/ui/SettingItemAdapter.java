@@ -24,22 +24,38 @@
 package com.example.settingadapter.ui;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.Editable;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.widget.CompoundButton;
 import android.widget.EditText;
 import android.widget.Switch;
 import android.widget.TextView;
 
 import com.example.settingadapter.R;
-import com.example.settingadapter.Utils;
+import com.example.settingadapter.TimeCodec;
 import com.example.settingadapter.model.Setting;
+import com.example.settingadapter.store.SettingDataSource;
+import com.example.settingadapter.store.SettingSnapshot;
+import com.example.settingadapter.store.SnapshotDataSource;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Adapter to build out views for each list item in recycler view.
@@ -48,12 +64,53 @@ import java.util.List;
 public class SettingItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     // Constants
+    /** Rows are inflated from their XML layouts, the default. */
+    public static final int RENDER_XML = 0;
+    /** Title and value rows are drawn by a single {@link SettingRowView}. */
+    public static final int RENDER_FLAT = 1;
+    private static final int PRECOMPUTE_AHEAD = 6;
+    /** View type of rows whose setting is still loading from a {@link SettingDataSource}. */
+    static final int VIEW_TYPE_PLACEHOLDER = -1;
+    /** Flag on the view type of rows drawn by a {@link SettingRowView}, so pools shared with XML adapters keep them apart. */
+    private static final int VIEW_TYPE_FLAT = 0x100;
 
     // Private Variables
     private LayoutInflater inflater;
     private List<Setting> settingList;
     private OnSettingActionListener settingListener;
 
+    private SettingDiffCallback.Snapshot snapshot;
+    private SettingKeyIndex keyIndex;
+    private boolean detectMoves = true;
+    private int renderMode = RENDER_XML;
+    private SettingTextPrecomputer precomputer;
+    private PagedSettingList pagedList;
+    private PagedSettingList.ValueSource loadedValueSource;
+    private boolean dispatchingDiff = false;
+
+    /** Incremented for every list set or submitted, diffs of older lists are dropped. */
+    private int generation = 0;
+    private PendingDiff pendingDiff;
+    private ExecutorService diffExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final RecyclerView.OnScrollListener prefetchListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager))
+                return;
+
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            if (dy >= 0) {
+                int last = layoutManager.findLastVisibleItemPosition();
+                precomputeRange(last + 1, last + 1 + PRECOMPUTE_AHEAD);
+            } else {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                precomputeRange(first - PRECOMPUTE_AHEAD, first);
+            }
+        }
+    };
+
     // Public Variables
 
     // Constructors
@@ -62,130 +119,734 @@ public class SettingItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         this.inflater = LayoutInflater.from(context);
         this.settingList = settingList;
         this.settingListener = listener;
+        this.keyIndex = new SettingKeyIndex(null);
+        setHasStableIds(true);
+        SettingSnapshot backing = SettingSnapshot.backing(settingList);
+        if (backing != null) {
+            setDataSource(new SnapshotDataSource(backing));
+        } else {
+            this.snapshot = SettingDiffCallback.Snapshot.of(settingList);
+            this.keyIndex.reset(settingList);
+        }
     }
 
+    /**
+     * Set the settings to display, dispatching only the changes
+     * from the previously displayed list.
+     * @param settingList collection of {@link Setting}
+     */
     public void setSettingList(List<Setting> settingList) {
-        this.settingList = settingList;
+        setSettingList(settingList, detectMoves);
+    }
+
+    /**
+     * Set the settings to display, dispatching only the changes
+     * from the previously displayed list. Lists of a {@link SettingSnapshot} are shown
+     * page by page through a {@link SnapshotDataSource} instead, so rows are only decoded when shown.
+     * @param settingList collection of {@link Setting}
+     * @param detectMoves whether the diff should look for moved items,
+     *                    which is costly on very large lists
+     */
+    public void setSettingList(List<Setting> settingList, boolean detectMoves) {
+        SettingSnapshot backing = SettingSnapshot.backing(settingList);
+        if (backing != null) {
+            setDataSource(new SnapshotDataSource(backing));
+            return;
+        }
+
+        // a list set directly supersedes any list still being diffed
+        generation++;
+        pendingDiff = null;
+
+        if (pagedList != null) {
+            pagedList.close();
+            pagedList = null;
+            this.settingList = settingList;
+            this.snapshot = SettingDiffCallback.Snapshot.of(settingList);
+            this.keyIndex.reset(settingList);
+            notifyDataSetChanged();
+            return;
+        }
+
+        SettingDiffCallback.Snapshot newSnapshot = SettingDiffCallback.Snapshot.of(settingList);
+        applyDiff(settingList, newSnapshot, DiffUtil.calculateDiff(new SettingDiffCallback(snapshot, newSnapshot), detectMoves));
+    }
+
+    /**
+     * Set the settings to display, diffing against the displayed list on a background thread.
+     * The list is only displayed if no other list is submitted or set before the diff completes.
+     * The list must not be modified until it is displayed; looking up or changing settings by key
+     * through this adapter displays it right away, so changes always reach the new list.
+     * @param settingList collection of {@link Setting}
+     * @param commitCallback run on the main thread once the list is displayed, may be null;
+     *                       not run if the list is superseded by a newer one
+     */
+    public void submitSettingList(final List<Setting> settingList, final Runnable commitCallback) {
+        if (pagedList != null || SettingSnapshot.backing(settingList) != null) {
+            setSettingList(settingList);
+            if (commitCallback != null) {
+                commitCallback.run();
+            }
+            return;
+        }
+
+        final int submitGeneration = ++generation;
+        final SettingDiffCallback.Snapshot oldSnapshot = snapshot;
+        final boolean moves = detectMoves;
+        final PendingDiff pending = new PendingDiff(settingList, commitCallback);
+        pendingDiff = pending;
+
+        if (diffExecutor == null) {
+            diffExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SettingDiff");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        diffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // the new settings are only read here, changing them through the adapter settles
+                // the diff first; values of the old snapshot may be updated in place meanwhile,
+                // which only affects whether those rows are rebound again
+                final SettingDiffCallback.Snapshot newSnapshot = SettingDiffCallback.Snapshot.of(settingList);
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new SettingDiffCallback(oldSnapshot, newSnapshot), moves);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (submitGeneration != generation)
+                            return;
+
+                        pendingDiff = null;
+                        applyDiff(pending.settingList, newSnapshot, result);
+                        if (pending.commitCallback != null) {
+                            pending.commitCallback.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Display settings loaded page by page from a data source instead of a list.
+     * Rows show placeholders while their page loads. Settings cannot be inserted or removed
+     * in this mode, {@link #setSettingList(List)} switches back to a list.
+     * @param source {@link SettingDataSource} to load from
+     */
+    public void setDataSource(SettingDataSource source) {
+        setDataSource(source, PagedSettingList.DEFAULT_PAGE_SIZE, PagedSettingList.DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * Display settings loaded page by page from a data source instead of a list.
+     * @param source {@link SettingDataSource} to load from
+     * @param pageSize settings per page
+     * @param maxPages pages kept in memory, the least recently used page is evicted first
+     */
+    public void setDataSource(SettingDataSource source, int pageSize, int maxPages) {
+        generation++;
+        pendingDiff = null;
+        if (pagedList != null) {
+            pagedList.close();
+        }
+        this.settingList = new ArrayList<>();
+        this.snapshot = SettingDiffCallback.Snapshot.of(settingList);
+        this.keyIndex.reset(settingList);
+        this.pagedList = new PagedSettingList(source, new PagedSettingList.Callback() {
+            @Override
+            public void onSizeChanged(int size) {
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onRangeLoaded(int start, int count) {
+                notifyItemRangeChanged(start, count);
+            }
+        }, pageSize, maxPages);
+        pagedList.setValueSource(loadedValueSource);
         notifyDataSetChanged();
     }
 
+    /**
+     * Set whether {@link #setSettingList(List)} should detect moved items.
+     * Defaults to true.
+     * @param detectMoves false to skip move detection for very large lists
+     */
+    public void setDetectMoves(boolean detectMoves) {
+        this.detectMoves = detectMoves;
+    }
+
+    /**
+     * Set how title and value rows (list, date, time and selectable items) are rendered.
+     * In flat mode the text of rows about to scroll into view is measured on a background thread.
+     * Must be called before the adapter is attached.
+     * @param renderMode {@link #RENDER_XML} or {@link #RENDER_FLAT}
+     */
+    public void setRenderMode(int renderMode) {
+        this.renderMode = renderMode;
+    }
+
     // Private Methods
 
+    private void applyDiff(List<Setting> settingList, SettingDiffCallback.Snapshot newSnapshot, DiffUtil.DiffResult result) {
+        this.settingList = settingList;
+        this.snapshot = newSnapshot;
+        this.keyIndex.reset(settingList);
+        dispatchingDiff = true;
+        try {
+            result.dispatchUpdatesTo(this);
+        } finally {
+            dispatchingDiff = false;
+        }
+    }
+
+    /**
+     * Display a submitted list right away, before positions or values of the displayed list are changed.
+     */
+    private void settlePendingDiff() {
+        PendingDiff pending = pendingDiff;
+        if (pending == null)
+            return;
+
+        generation++;
+        pendingDiff = null;
+        SettingDiffCallback.Snapshot newSnapshot = SettingDiffCallback.Snapshot.of(pending.settingList);
+        applyDiff(pending.settingList, newSnapshot,
+                DiffUtil.calculateDiff(new SettingDiffCallback(snapshot, newSnapshot), detectMoves));
+        if (pending.commitCallback != null) {
+            pending.commitCallback.run();
+        }
+    }
+
+    private boolean isFlat(int type) {
+        return isFlat(type, renderMode);
+    }
+
+    private static boolean isFlat(int type, int renderMode) {
+        if (renderMode != RENDER_FLAT)
+            return false;
+
+        switch (type) {
+            case Setting.SELECTABLE_ITEM:
+            case Setting.LIST:
+            case Setting.DATE:
+            case Setting.TIME:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void precomputeRange(int from, int to) {
+        if (precomputer == null || from >= to)
+            return;
+
+        int end = Math.min(to, getItemCount());
+        for (int position = Math.max(0, from); position < end; position++) {
+            Setting setting = getSettingAt(position);
+            if (setting != null && isFlat(setting.getType())) {
+                precomputer.precompute(getItemId(position), setting.getTitle(), flatValue(setting));
+            }
+        }
+    }
+
+    private int viewTypeFor(int type) {
+        return viewTypeFor(type, renderMode);
+    }
+
+    /**
+     * @param type {@link Setting#getType()}
+     * @param renderMode {@link #RENDER_XML} or {@link #RENDER_FLAT}
+     * @return view type of rows of the setting type in the render mode
+     */
+    static int viewTypeFor(int type, int renderMode) {
+        return isFlat(type, renderMode) ? type | VIEW_TYPE_FLAT : type;
+    }
+
+    private static String flatValue(Setting setting) {
+        return setting.getType() == Setting.SELECTABLE_ITEM ? null : displayValue(setting);
+    }
+
+    private static String displayValue(Setting setting) {
+        if (setting.getType() == Setting.TIME) {
+            // TIME settings without a valid value show nothing until one is picked
+            return TimeCodec.display(setting.getTime());
+        }
+        return setting.getValue();
+    }
+
     // Public Methods
 
+    /**
+     * Find the position of a setting by key.
+     * @param key {@link Setting#getKey()}
+     * @return position of the setting or -1 if not found
+     */
+    public int getPosition(String key) {
+        settlePendingDiff();
+        if (pagedList != null)
+            return pagedList.positionOfLoaded(key);
 
-    @Override
-    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        View view;
+        return keyIndex.positionOf(key);
+    }
+
+    /**
+     * Find the position of a setting by key, also when it is not loaded from its data source yet.
+     * @param key {@link Setting#getKey()}
+     * @param listener called on the main thread with the position, -1 if not found
+     */
+    void findPosition(String key, PagedSettingList.OnPositionFoundListener listener) {
+        settlePendingDiff();
+        if (pagedList != null) {
+            pagedList.findPosition(key, listener);
+        } else {
+            listener.onPositionFound(keyIndex.positionOf(key));
+        }
+    }
+
+    /**
+     * @param position position of the setting
+     * @return the displayed setting or null if the position is out of range
+     */
+    public Setting getSettingAt(int position) {
+        if (pagedList != null)
+            return pagedList.get(position);
+
+        if (settingList == null || position < 0 || position >= settingList.size())
+            return null;
+
+        return settingList.get(position);
+    }
+
+    /**
+     * Find a setting by key.
+     * @param key {@link Setting#getKey()}
+     * @return the setting or null if not found
+     */
+    public Setting getSetting(String key) {
+        int position = getPosition(key);
+        if (position < 0)
+            return null;
+
+        return getSettingAt(position);
+    }
+
+    /**
+     * Change the value of a setting and rebind only its row.
+     * @param key {@link Setting#getKey()}
+     * @param value new value
+     * @return true if a setting with the key was found
+     */
+    public boolean updateValue(String key, String value) {
+        settlePendingDiff();
+        int position = keyIndex.positionOf(key);
+        if (pagedList != null) {
+            position = pagedList.positionOfLoaded(key);
+            if (position < 0)
+                return false;
+
+            Setting setting = pagedList.get(position);
+            setting.setValue(value);
+            pagedList.onChanged(setting);
+            notifyItemChanged(position);
+            return true;
+        }
+        if (position < 0)
+            return false;
+
+        settingList.get(position).setValue(value);
+        snapshot.values[position] = settingList.get(position).getValue();
+        notifyItemChanged(position);
+        return true;
+    }
+
+    /**
+     * Record that the value of a displayed setting was changed in place, without rebinding its row.
+     * Settings of a data source keep the change when their page is evicted and loaded again.
+     * @param setting the changed {@link Setting}
+     */
+    void onValueChanged(Setting setting) {
+        if (pagedList != null) {
+            pagedList.onChanged(setting);
+        }
+    }
+
+    /**
+     * Set where data source settings take their value from when their page loads,
+     * so values of rows that are not loaded do not have to be kept. Not used when showing a list.
+     * @param valueSource values by key, null to show the loaded values
+     */
+    void setLoadedValueSource(PagedSettingList.ValueSource valueSource) {
+        this.loadedValueSource = valueSource;
+        if (pagedList != null) {
+            pagedList.setValueSource(valueSource);
+        }
+    }
+
+    /**
+     * Rebind a setting whose value was changed in place.
+     * @param position position of the setting, see {@link #getPosition(String)}
+     */
+    public void notifySettingChanged(int position) {
+        if (pagedList != null) {
+            pagedList.onChanged(pagedList.get(position));
+            notifyItemChanged(position);
+            return;
+        }
+        snapshot.values[position] = settingList.get(position).getValue();
+        notifyItemChanged(position);
+    }
+
+    /**
+     * Rebind several settings whose values were changed in place.
+     * Adjacent positions are notified as one range.
+     * @param positions positions of the settings, see {@link #getPosition(String)},
+     *                  in any order, sorted by this method
+     * @param count number of positions to use from the array
+     */
+    public void notifySettingsChanged(int[] positions, int count) {
+        Arrays.sort(positions, 0, count);
+        int runStart = -1;
+        int runEnd = -1;
+        for (int i = 0; i < count; i++) {
+            int position = positions[i];
+            if (pagedList != null) {
+                pagedList.onChanged(pagedList.get(position));
+            } else {
+                snapshot.values[position] = settingList.get(position).getValue();
+            }
+
+            if (position == runEnd + 1 && runStart >= 0) {
+                runEnd = position;
+            } else if (position > runEnd) {
+                if (runStart >= 0) {
+                    notifyItemRangeChanged(runStart, runEnd - runStart + 1);
+                }
+                runStart = position;
+                runEnd = position;
+            }
+        }
+        if (runStart >= 0) {
+            notifyItemRangeChanged(runStart, runEnd - runStart + 1);
+        }
+    }
+
+    /**
+     * Insert a setting and notify only its row.
+     * @param position position to insert at
+     * @param setting {@link Setting} to insert
+     */
+    public void insertSetting(int position, Setting setting) {
+        settlePendingDiff();
+        if (pagedList != null)
+            throw new UnsupportedOperationException("Cannot insert into a data source");
+
+        settingList.add(position, setting);
+        List<Setting> inserted = Collections.singletonList(setting);
+        snapshot.insert(position, inserted);
+        keyIndex.onInserted(position, inserted);
+        notifyItemInserted(position);
+    }
+
+    /**
+     * Insert settings and notify only their rows.
+     * @param position position to insert at
+     * @param settings settings to insert
+     */
+    public void insertSettings(int position, List<Setting> settings) {
+        settlePendingDiff();
+        if (pagedList != null)
+            throw new UnsupportedOperationException("Cannot insert into a data source");
+
+        if (settings.isEmpty())
+            return;
+
+        settingList.addAll(position, settings);
+        snapshot.insert(position, settings);
+        keyIndex.onInserted(position, settings);
+        notifyItemRangeInserted(position, settings.size());
+    }
+
+    /**
+     * Remove a range of settings and notify only their rows.
+     * @param position position of the first setting to remove
+     * @param count number of settings to remove
+     */
+    public void removeSettings(int position, int count) {
+        settlePendingDiff();
+        if (pagedList != null)
+            throw new UnsupportedOperationException("Cannot remove from a data source");
+
+        if (count <= 0)
+            return;
+
+        List<Setting> range = settingList.subList(position, position + count);
+        keyIndex.onRemoved(position, range);
+        range.clear();
+        snapshot.remove(position, count);
+        notifyItemRangeRemoved(position, count);
+    }
+
+    /**
+     * Remove a setting and notify only its row.
+     * @param key {@link Setting#getKey()}
+     * @return the removed setting or null if not found
+     */
+    public Setting removeSetting(String key) {
+        settlePendingDiff();
+        if (pagedList != null)
+            throw new UnsupportedOperationException("Cannot remove from a data source");
+
+        int position = keyIndex.positionOf(key);
+        if (position < 0)
+            return null;
+
+        Setting removed = settingList.remove(position);
+        snapshot.remove(position, 1);
+        keyIndex.onRemoved(position, Collections.singletonList(removed));
+        notifyItemRemoved(position);
+        return removed;
+    }
+
+
+    /**
+     * @return true while the changes of {@link #setSettingList(List)} are dispatched
+     */
+    boolean isDispatchingDiff() {
+        return dispatchingDiff;
+    }
+
+    /**
+     * Stop loading from the data source and drop submitted lists that are still being diffed.
+     * The adapter shows nothing afterwards if it was showing a data source.
+     */
+    void release() {
+        generation++;
+        pendingDiff = null;
+        if (diffExecutor != null) {
+            diffExecutor.shutdownNow();
+            diffExecutor = null;
+        }
+        if (pagedList != null) {
+            pagedList.close();
+            pagedList = null;
+            settingList = new ArrayList<>();
+            snapshot = SettingDiffCallback.Snapshot.of(settingList);
+            keyIndex.reset(settingList);
+        }
+    }
+
+    /**
+     * @param viewType {@link Setting#getType()}
+     * @return layout resource for the view type or 0 if the type is unknown
+     */
+    static int layoutFor(int viewType) {
         switch (viewType) {
             case Setting.FOOTER:
-                view = inflater.inflate(R.layout.recycler_item_setting_footer, parent, false);
-                return new SimpleViewHolder(view);
+                return R.layout.recycler_item_setting_footer;
             case Setting.HEADER:
-                view = inflater.inflate(R.layout.recycler_item_setting_header, parent, false);
-                return new SimpleViewHolder(view);
+                return R.layout.recycler_item_setting_header;
             case Setting.SELECTABLE_ITEM:
-                view = inflater.inflate(R.layout.recycler_item_setting_simple, parent, false);
-                return new SimpleViewHolder(view);
+                return R.layout.recycler_item_setting_simple;
+            case Setting.SWITCH:
+                return R.layout.recycler_item_setting_switch;
+            case Setting.LIST:
+                return R.layout.recycler_item_setting_list;
+            case Setting.DATE:
+            case Setting.TIME:
+                return R.layout.recycler_item_setting_datetime;
+            case Setting.INPUT:
+                return R.layout.recycler_item_setting_input;
+            case VIEW_TYPE_PLACEHOLDER:
+                return R.layout.recycler_item_setting_placeholder;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param viewType {@link #getItemViewType(int)}
+     * @return {@link Setting#getType()} of rows with the view type
+     */
+    static int settingType(int viewType) {
+        return viewType == VIEW_TYPE_PLACEHOLDER ? viewType : viewType & ~VIEW_TYPE_FLAT;
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if ((viewType & VIEW_TYPE_FLAT) != 0 && viewType != VIEW_TYPE_PLACEHOLDER) {
+            SettingRowView rowView = new SettingRowView(parent.getContext());
+            if (settingType(viewType) == Setting.LIST) {
+                // LIST rows show their value in the title color, see recycler_item_setting_list.xml
+                rowView.setValueColor(ContextCompat.getColor(parent.getContext(), R.color.colorDarkText));
+            }
+            return new FlatViewHolder(rowView);
+        }
+
+        int layout = layoutFor(viewType);
+        if (layout == 0)
+            return null;
+
+        View view = null;
+        if (parent instanceof RecyclerView && ((RecyclerView) parent).getRecycledViewPool() instanceof SettingViewPool) {
+            view = ((SettingViewPool) ((RecyclerView) parent).getRecycledViewPool()).takePrewarmedView(viewType);
+        }
+        if (view == null) {
+            view = inflater.inflate(layout, parent, false);
+        }
+
+        switch (viewType) {
+            case VIEW_TYPE_PLACEHOLDER:
+                return new PlaceholderViewHolder(view);
             case Setting.SWITCH:
-                view = inflater.inflate(R.layout.recycler_item_setting_switch, parent, false);
                 return new SwitchViewHolder(view);
             case Setting.LIST:
-                view = inflater.inflate(R.layout.recycler_item_setting_list, parent, false);
                 return new ListViewHolder(view);
             case Setting.DATE:
             case Setting.TIME:
-                view = inflater.inflate(R.layout.recycler_item_setting_datetime, parent, false);
                 return new DateTimeViewHolder(view);
             case Setting.INPUT:
-                view = inflater.inflate(R.layout.recycler_item_setting_input, parent, false);
                 return new InputViewHolder(view);
             default:
-                return null;
+                return new SimpleViewHolder(view);
         }
     }
 
     @Override
-    public void onBindViewHolder(final RecyclerView.ViewHolder holder, int position) {
-        Setting setting = settingList.get(holder.getAdapterPosition());
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        Setting setting = getSettingAt(position);
+        if (setting == null)
+            return;
 
-        // set on click listener for holder
-        holder.itemView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (settingListener != null)
-                    settingListener.settingItemClick(holder.getItemViewType(), holder.getAdapterPosition());
+        if (holder instanceof FlatViewHolder) {
+            SettingRowView rowView = ((FlatViewHolder) holder).rowView;
+            String value = flatValue(setting);
+            SettingRowLayout layout = null;
+            if (precomputer != null && rowView.getWidth() > 0) {
+                precomputer.setWidth(rowView.getWidth());
+                layout = precomputer.get(getItemId(position), setting.getTitle(), value, rowView.getWidth());
             }
-        });
-
-        if (holder instanceof SimpleViewHolder) {
+            if (layout != null) {
+                rowView.setLayout(layout);
+            } else {
+                rowView.setTitle(setting.getTitle());
+                rowView.setValue(value);
+            }
+        } else if (holder instanceof SimpleViewHolder) {
             SimpleViewHolder simpleHolder = (SimpleViewHolder) holder;
             simpleHolder.setText(setting.getTitle());
         } else if (holder instanceof SwitchViewHolder) {
             SwitchViewHolder switchViewHolder = (SwitchViewHolder) holder;
             switchViewHolder.setText(setting.getTitle());
-            switchViewHolder.setChecked(setting.getValue().equals("1"));
-            switchViewHolder.setCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
-                @Override
-                public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-                    if (settingListener != null)
-                        settingListener.settingItemChanged(Setting.SWITCH, holder.getAdapterPosition(), (isChecked ? "1" : "0"));
-                }
-            });
+            switchViewHolder.setChecked(setting.getBoolean());
         } else if (holder instanceof ListViewHolder) {
             ListViewHolder listViewHolder = (ListViewHolder) holder;
             listViewHolder.setTitleText(setting.getTitle());
             listViewHolder.setValueText(setting.getValue());
         } else if (holder instanceof DateTimeViewHolder) {
             DateTimeViewHolder dateTimeViewHolder = (DateTimeViewHolder) holder;
-            String value = setting.getValue();
-            if (setting.getType() == Setting.DATE) {
-                value = setting.getValue();
-            } else if (setting.getType() == Setting.TIME) {
-                java.util.Date time = Utils.getTimeFromSetting(setting.getValue());
-                value = Utils.stringForSettingTimeDisplay(time);
-            }
-            dateTimeViewHolder.setValueText(value);
+            dateTimeViewHolder.setValueText(displayValue(setting));
             dateTimeViewHolder.setTitleText(setting.getTitle());
         } else if (holder instanceof InputViewHolder) {
             InputViewHolder inputViewHolder = (InputViewHolder) holder;
 
             inputViewHolder.setTitleText(setting.getTitle());
             inputViewHolder.setValueText(setting.getValue());
+        }
+    }
 
-            inputViewHolder.setTextWatcher(new TextWatcher() {
-                @Override
-                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-                }
-                @Override
-                public void onTextChanged(CharSequence s, int start, int before, int count) {
-                }
-                @Override
-                public void afterTextChanged(Editable s) {
-                    if (settingListener != null)
-                        settingListener.settingItemChanged(holder.getItemViewType(), holder.getAdapterPosition(), s.toString());
-                }
-            });
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        if (renderMode == RENDER_FLAT) {
+            if (precomputer == null) {
+                precomputer = new SettingTextPrecomputer(recyclerView.getContext());
+            }
+            recyclerView.addOnScrollListener(prefetchListener);
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(prefetchListener);
+        if (precomputer != null) {
+            precomputer.shutdown();
+            precomputer = null;
         }
     }
 
     @Override
     public int getItemCount() {
+        if (pagedList != null)
+            return pagedList.size();
+
         if (settingList == null) {
             return 0;
         }
         return settingList.size();
     }
 
+    @Override
+    public long getItemId(int position) {
+        if (pagedList != null) {
+            // rows of a data source never move, and a placeholder must keep its id once its setting loads
+            return position;
+        }
+        if (position >= 0 && position < snapshot.size()) {
+            return snapshot.ids[position];
+        }
+        return RecyclerView.NO_ID;
+    }
+
     @Override
     public int getItemViewType(int position) {
+        if (pagedList != null) {
+            Setting setting = pagedList.get(position);
+            return setting == null ? VIEW_TYPE_PLACEHOLDER : viewTypeFor(setting.getType());
+        }
         if (position >= -1 && position < settingList.size()) {
             Setting setting = settingList.get(position);
-            return setting.getType();
+            return viewTypeFor(setting.getType());
         }
         return 0;
     }
 
+    /**
+     * View type of a row without loading it. Rows of a data source whose page is not loaded
+     * read as placeholders, so scanning every position does not request every page.
+     * @param position adapter position
+     * @return view type as {@link #getItemViewType(int)}
+     */
+    int peekItemViewType(int position) {
+        if (pagedList != null) {
+            Setting setting = pagedList.peek(position);
+            return setting == null ? VIEW_TYPE_PLACEHOLDER : viewTypeFor(setting.getType());
+        }
+        return getItemViewType(position);
+    }
+
+    /**
+     * @param position first position to look at
+     * @param end position to stop at
+     * @return the position, or for a data source the next position whose page is loaded, at most end
+     */
+    int nextLoadedPosition(int position, int end) {
+        return pagedList != null ? pagedList.nextLoaded(position, end) : position;
+    }
+
+    /**
+     * @param start first position of the range
+     * @param end position after the range
+     * @return true if every row in the range is loaded, always true for a list
+     */
+    boolean isRangeLoaded(int start, int end) {
+        return pagedList == null || pagedList.isLoaded(start, end);
+    }
+
 
 
     // Setting Action Listener for calling view
@@ -205,12 +866,20 @@ public class SettingItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
          * @param newValue the new selected value
          */
         void settingItemChanged(int type, int index, Object newValue);
+
+        /**
+         * Notify that the user is done editing an item, e.g. an input lost focus.
+         * @param type {@link Setting#type}
+         * @param index index of item in {@link #settingList}
+         */
+        void settingItemEditFinished(int type, int index);
     }
 
     public interface OnSettingChangeListener {
 
         /**
-         * Notify a change in items.
+         * Notify a change in items. Called on the main thread, coalesced INPUT changes are called on the
+         * executor set with {@link SettingItemFragment#setInputDeliveryExecutor(java.util.concurrent.Executor)}.
          * @param type {@link Setting#type}
          * @param key key of item in {@link #settingList}
          * @param newValue the new selected value
@@ -218,11 +887,91 @@ public class SettingItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         void settingItemChanged(int type, String key, String newValue);
     }
 
+    public interface OnSettingBatchChangeListener {
+
+        /**
+         * Notify that a batch of changes was committed.
+         * @param keys keys of the changed settings, in the order they were first changed
+         */
+        void settingsChanged(List<String> keys);
+    }
+
+    public interface OnTypedSettingChangeListener {
+
+        /**
+         * Notify a change in items without converting the value to a String.
+         * Called on the main thread with the displayed setting. Coalesced INPUT changes delivered on the
+         * executor set with {@link SettingItemFragment#setInputDeliveryExecutor(java.util.concurrent.Executor)}
+         * receive a copy holding the delivered value instead, changes to it are not shown.
+         * @param type {@link Setting#type}
+         * @param setting the changed setting, read the value with its typed getters
+         */
+        void settingItemChanged(int type, Setting setting);
+    }
+
 
 
     // View Holders
 
-    private class SimpleViewHolder extends RecyclerView.ViewHolder {
+    /**
+     * Base holder that owns a single click listener for its row.
+     * Listeners are created once per holder and read the current
+     * adapter position when they fire, so binding allocates nothing.
+     * Holders can move between adapters through a shared pool, so events go to the listener
+     * of the adapter showing the holder, never to the adapter that created it.
+     */
+    private static abstract class SettingViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        SettingViewHolder(View itemView) {
+            super(itemView);
+            itemView.setOnClickListener(this);
+        }
+
+        /**
+         * @return listener of the adapter the holder is attached to, or null while detached
+         */
+        OnSettingActionListener listener() {
+            ViewParent parent = itemView.getParent();
+            if (parent instanceof RecyclerView) {
+                RecyclerView.Adapter adapter = ((RecyclerView) parent).getAdapter();
+                if (adapter instanceof SettingItemAdapter)
+                    return ((SettingItemAdapter) adapter).settingListener;
+            }
+            return null;
+        }
+
+        int settingType() {
+            return SettingItemAdapter.settingType(getItemViewType());
+        }
+
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+            OnSettingActionListener listener = listener();
+            if (listener != null && position != RecyclerView.NO_POSITION)
+                listener.settingItemClick(settingType(), position);
+        }
+
+        void notifyChanged(Object newValue) {
+            int position = getAdapterPosition();
+            OnSettingActionListener listener = listener();
+            if (listener != null && position != RecyclerView.NO_POSITION)
+                listener.settingItemChanged(settingType(), position, newValue);
+        }
+
+        /**
+         * Set text only if it differs from the shown text. Setting equal text still allocates
+         * new text objects, and an EditText loses its cursor.
+         */
+        static void setText(TextView view, String text) {
+            CharSequence shown = text == null ? "" : text;
+            if (view != null && !TextUtils.equals(view.getText(), shown)) {
+                view.setText(shown);
+            }
+        }
+    }
+
+    private static class SimpleViewHolder extends SettingViewHolder {
         private TextView textView;
 
         SimpleViewHolder(View itemView) {
@@ -232,42 +981,44 @@ public class SettingItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         }
 
         void setText(String text) {
-            if (textView != null) {
-                textView.setText(text);
-            }
+            setText(textView, text);
         }
     }
 
-    private class SwitchViewHolder extends RecyclerView.ViewHolder {
+    private static class SwitchViewHolder extends SettingViewHolder implements CompoundButton.OnCheckedChangeListener {
         private TextView textView;
         private Switch switchView;
+        private boolean binding = false;
 
         SwitchViewHolder(View itemView) {
             super(itemView);
             textView = (TextView) itemView.findViewById(R.id.recycler_setting_switch_textView);
             switchView = (Switch) itemView.findViewById(R.id.recycler_setting_switch_switch);
+            if (switchView != null) {
+                switchView.setOnCheckedChangeListener(this);
+            }
         }
 
         void setText(String text) {
-            if (textView != null) {
-                textView.setText(text);
-            }
+            setText(textView, text);
         }
 
         void setChecked(boolean value) {
             if (switchView != null) {
+                binding = true;
                 switchView.setChecked(value);
+                binding = false;
             }
         }
 
-        void setCheckedChangeListener(CompoundButton.OnCheckedChangeListener listener) {
-            if (switchView != null) {
-                switchView.setOnCheckedChangeListener(listener);
-            }
+        @Override
+        public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+            if (!binding)
+                notifyChanged(isChecked ? Boolean.TRUE : Boolean.FALSE);
         }
     }
 
-    private class ListViewHolder extends RecyclerView.ViewHolder {
+    private static class ListViewHolder extends SettingViewHolder {
         private TextView textViewTitle;
         private TextView textViewValue;
 
@@ -278,48 +1029,97 @@ public class SettingItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         }
 
         void setTitleText(String text) {
-            if (textViewTitle != null) {
-                textViewTitle.setText(text);
-            }
+            setText(textViewTitle, text);
         }
 
         void setValueText(String text) {
-            if (textViewValue != null) {
-                textViewValue.setText(text);
-            }
+            setText(textViewValue, text);
         }
     }
 
-    private class InputViewHolder extends RecyclerView.ViewHolder {
+    private static class InputViewHolder extends SettingViewHolder implements TextWatcher, View.OnFocusChangeListener {
         private TextView textView;
         private EditText editText;
+        private boolean binding = false;
 
         InputViewHolder(View itemView) {
             super(itemView);
             textView = (TextView) itemView.findViewById(R.id.recycler_setting_input_textView);
             editText = (EditText) itemView.findViewById(R.id.recycler_setting_input_editText);
+            if (editText != null) {
+                editText.addTextChangedListener(this);
+                editText.setOnFocusChangeListener(this);
+            }
         }
 
         void setTitleText(String text) {
-            if (textView != null) {
-                textView.setText(text);
-            }
+            setText(textView, text);
         }
 
         void setValueText(String text) {
-            if (editText != null) {
-                editText.setText(text);
-            }
+            binding = true;
+            setText(editText, text);
+            binding = false;
         }
 
-        void setTextWatcher(TextWatcher textWatcher) {
-            if (editText != null) {
-                editText.addTextChangedListener(textWatcher);
-            }
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (!binding)
+                notifyChanged(s.toString());
+        }
+
+        @Override
+        public void onFocusChange(View v, boolean hasFocus) {
+            int position = getAdapterPosition();
+            OnSettingActionListener listener = listener();
+            if (!hasFocus && listener != null && position != RecyclerView.NO_POSITION)
+                listener.settingItemEditFinished(settingType(), position);
+        }
+    }
+
+    /**
+     * List submitted with {@link #submitSettingList(List, Runnable)} whose diff is running.
+     */
+    private static class PendingDiff {
+        final List<Setting> settingList;
+        final Runnable commitCallback;
+
+        PendingDiff(List<Setting> settingList, Runnable commitCallback) {
+            this.settingList = settingList;
+            this.commitCallback = commitCallback;
+        }
+    }
+
+    /**
+     * Holder for rows whose setting is still loading, not clickable.
+     */
+    private static class PlaceholderViewHolder extends RecyclerView.ViewHolder {
+        PlaceholderViewHolder(View itemView) {
+            super(itemView);
+        }
+    }
+
+    /**
+     * Holder for rows drawn by a {@link SettingRowView} in {@link #RENDER_FLAT} mode.
+     */
+    private static class FlatViewHolder extends SettingViewHolder {
+        private final SettingRowView rowView;
+
+        FlatViewHolder(SettingRowView rowView) {
+            super(rowView);
+            this.rowView = rowView;
         }
     }
 
-    private class DateTimeViewHolder extends RecyclerView.ViewHolder {
+    private static class DateTimeViewHolder extends SettingViewHolder {
         private TextView textViewTitle;
         private TextView textViewValue;
 
@@ -330,17 +1130,12 @@ public class SettingItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         }
 
         void setTitleText(String text) {
-            if (textViewTitle != null) {
-                textViewTitle.setText(text);
-            }
+            setText(textViewTitle, text);
         }
 
         void setValueText(String text) {
-            if (textViewValue != null) {
-                textViewValue.setText(text);
-            }
+            setText(textViewValue, text);
         }
     }
 
 }
-
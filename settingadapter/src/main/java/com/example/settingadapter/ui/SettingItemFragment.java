@@ -23,28 +23,38 @@
  */
 package com.example.settingadapter.ui;
 
-import android.app.Dialog;
 import android.app.TimePickerDialog;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.Fragment;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.ListView;
 import android.widget.TimePicker;
 
 import com.example.settingadapter.R;
+import com.example.settingadapter.TimeCodec;
 import com.example.settingadapter.Utils;
 import com.example.settingadapter.model.Setting;
+import com.example.settingadapter.model.SettingList;
+import com.example.settingadapter.model.SettingModel;
+import com.example.settingadapter.model.SettingSection;
+import com.example.settingadapter.store.SettingDataSource;
+import com.example.settingadapter.store.SettingSnapshot;
+import com.example.settingadapter.store.SettingStore;
+import com.example.settingadapter.store.SnapshotDataSource;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * TODO: add description
@@ -54,6 +64,8 @@ public class SettingItemFragment extends Fragment implements SettingItemAdapter.
     // Constants
     public static final String SETTING_LIST = "SettingListKey";
     public static final String TITLE = "SettingTitle";
+    /** Typing paused longer than this starts a new undo step when input is not coalesced. */
+    private static final long INPUT_MERGE_MILLIS = 1000;
 
     // Private Variables
     private RecyclerView recyclerView;
@@ -61,9 +73,73 @@ public class SettingItemFragment extends Fragment implements SettingItemAdapter.
 
     private List<Setting> settingList = new ArrayList<>();
     private SettingItemAdapter.OnSettingChangeListener settingChangeListener;
+    private SettingItemAdapter.OnTypedSettingChangeListener typedSettingChangeListener;
+    private SettingChangeStream changeStream;
+    private SettingChangeJournal journal = new SettingChangeJournal(SettingChangeJournal.DEFAULT_CAPACITY);
+    private SettingStore settingStore;
+    private boolean saveSettingList = false;
 
-    private Dialog listDialog;
+    private OptionPicker optionPicker;
     private boolean shouldRefresh = false;
+    private boolean detectMoves = true;
+    private RecyclerView.RecycledViewPool viewPool;
+    private int prewarmCount = 0;
+    private int renderMode = SettingItemAdapter.RENDER_XML;
+    private SettingSearchIndex searchIndex;
+    private String searchQuery;
+    private List<SettingSection> sections;
+    private SettingSectionIndex sectionHeaders;
+    private boolean stickyHeaders = false;
+    private StickyHeaderItem stickyHeaderItem;
+    private SettingItemAdapter.OnSettingBatchChangeListener batchChangeListener;
+
+    /** Values changed in the open batch by key, applied by {@link #commit()}. */
+    private final Map<String, BatchChange> batchChanges = new LinkedHashMap<>();
+    private int batchDepth = 0;
+    private boolean asyncDiff = false;
+
+    private SettingModel settingModel;
+    private SettingModel.Snapshot renderedSnapshot;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean renderScheduled = new AtomicBoolean(false);
+    private final Runnable renderModelTask = new Runnable() {
+        @Override
+        public void run() {
+            renderScheduled.set(false);
+            renderModel();
+        }
+    };
+    private final SettingModel.Listener modelListener = new SettingModel.Listener() {
+        @Override
+        public void onPublished(SettingModel.Snapshot snapshot) {
+            // one render per main loop pass, it always reads the latest snapshot
+            if (renderScheduled.compareAndSet(false, true)) {
+                mainHandler.post(renderModelTask);
+            }
+        }
+    };
+    /** Rows of a data source take the model's value when their page loads. */
+    private final PagedSettingList.ValueSource modelValues = new PagedSettingList.ValueSource() {
+        @Override
+        public String valueOf(String key) {
+            return settingModel == null ? null : settingModel.snapshot().getValue(key);
+        }
+    };
+    private SettingDataSource dataSource;
+    private final SettingChangeCoalescer inputCoalescer = new SettingChangeCoalescer(new SettingChangeCoalescer.Sink() {
+        @Override
+        public void deliver(int type, String key, String value, Setting setting) {
+            if (changeStream != null) {
+                changeStream.publish(type, key, value);
+            }
+            if (settingChangeListener != null) {
+                settingChangeListener.settingItemChanged(type, key, value);
+            }
+            if (typedSettingChangeListener != null) {
+                typedSettingChangeListener.settingItemChanged(type, setting);
+            }
+        }
+    }, 0);
 
     // Private Variables
 
@@ -78,31 +154,688 @@ public class SettingItemFragment extends Fragment implements SettingItemAdapter.
         recyclerView = (RecyclerView) view.findViewById(R.id.setting_item_recyclerView);
         LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
         recyclerView.setLayoutManager(layoutManager);
+        if (viewPool != null) {
+            recyclerView.setRecycledViewPool(viewPool);
+        }
+        if (prewarmCount > 0 && viewPool instanceof SettingViewPool) {
+            ((SettingViewPool) viewPool).prewarmAll(getContext(), recyclerView, prewarmCount, renderMode);
+        }
 
-        settingItemAdapter = new SettingItemAdapter(getContext(), settingList, this);
+        if (savedInstanceState == null) {
+            // nothing is restored, so a file left by an earlier session is stale
+            SettingList.deleteSpill(spillFile());
+        } else {
+            SettingList savedList = savedInstanceState.getParcelable(SETTING_LIST);
+            if (savedList != null) {
+                settingList = savedList.getSettings();
+                if (searchIndex != null) {
+                    searchIndex.reset(settingList);
+                }
+            }
+        }
+
+        settingItemAdapter = new SettingItemAdapter(getContext(),
+                isSearching() ? searchIndex.filter(searchQuery) : settingList, this);
+        settingItemAdapter.setDetectMoves(detectMoves);
+        settingItemAdapter.setRenderMode(renderMode);
+        settingItemAdapter.setLoadedValueSource(modelValues);
+        if (dataSource != null) {
+            settingItemAdapter.setDataSource(dataSource);
+        }
         recyclerView.setAdapter(settingItemAdapter);
         recyclerView.addItemDecoration(new EmptyDividerItem());
+        if (stickyHeaders) {
+            stickyHeaderItem = new StickyHeaderItem(settingItemAdapter);
+            recyclerView.addItemDecoration(stickyHeaderItem);
+        }
+        if (settingModel != null) {
+            renderedSnapshot = null;
+            renderModel();
+        }
 
         return view;
     }
 
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (!saveSettingList || dataSource != null)
+            return;
+
+        outState.putParcelable(SETTING_LIST, new SettingList(settingList, spillFile()));
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        inputCoalescer.flushAll();
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        if (settingStore != null) {
+            settingStore.writeNow();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (settingModel != null) {
+            settingModel.removeListener(modelListener);
+        }
+        mainHandler.removeCallbacks(renderModelTask);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (stickyHeaderItem != null) {
+            stickyHeaderItem.release();
+            stickyHeaderItem = null;
+        }
+        if (sectionHeaders != null) {
+            settingItemAdapter.unregisterAdapterDataObserver(sectionHeaders);
+            sectionHeaders = null;
+        }
+        settingItemAdapter.release();
+        if (optionPicker != null) {
+            // the dialog belongs to the activity, do not leak it past the view
+            optionPicker.dismiss();
+            optionPicker = null;
+        }
+    }
+
     // Private Methods
 
+    /**
+     * One file per host activity and fragment tag or id, so every save of this fragment replaces it.
+     */
+    private File spillFile() {
+        String name = getTag() != null ? getTag() : String.valueOf(getId());
+        return new File(getContext().getCacheDir(),
+                SETTING_LIST + "-" + getActivity().getClass().getName() + "-" + name);
+    }
+
+    /**
+     * Store a value changed by the user in its typed slot.
+     */
+    private static void applyValue(int type, Setting setting, Object newValue) {
+        if (newValue instanceof Boolean) {
+            setting.setBoolean((Boolean) newValue);
+        } else if (newValue instanceof Integer) {
+            if (type == Setting.TIME) {
+                setting.setTime((Integer) newValue);
+            } else {
+                setting.setInt((Integer) newValue);
+            }
+        } else if (newValue instanceof Long) {
+            setting.setLong((Long) newValue);
+        } else {
+            setting.setValue(Utils.parseObject(newValue));
+        }
+    }
+
+    /**
+     * Notify listeners of a changed setting.
+     */
+    private void dispatchChange(int type, Setting setting) {
+        if (changeStream != null) {
+            changeStream.publish(type, setting.getKey(), setting.getValue());
+        }
+        if (settingChangeListener != null) {
+            settingChangeListener.settingItemChanged(type, setting.getKey(), setting.getValue());
+        }
+        if (typedSettingChangeListener != null) {
+            typedSettingChangeListener.settingItemChanged(type, setting);
+        }
+    }
+
+    private boolean isSearching() {
+        return SettingSearchIndex.isFiltering(searchQuery);
+    }
+
+    /**
+     * Show the settings matching the current query, or all of them without one.
+     */
+    private void applySearch() {
+        if (dataSource != null)
+            return;
+
+        List<Setting> shown = isSearching() ? searchIndex.filter(searchQuery) : settingList;
+        if (asyncDiff) {
+            settingItemAdapter.submitSettingList(shown, null);
+        } else {
+            settingItemAdapter.setSettingList(shown);
+        }
+    }
+
+    /**
+     * Find a setting of the whole list, including ones hidden by the current search.
+     */
+    private Setting findSetting(String key) {
+        Setting setting = settingItemAdapter.getSetting(key);
+        if (setting != null || !isSearching() || key == null)
+            return setting;
+
+        for (Setting candidate : settingList) {
+            if (key.equals(candidate.getKey()))
+                return candidate;
+        }
+        return null;
+    }
+
+    /**
+     * Apply the values of the latest model snapshot to the displayed settings.
+     */
+    private void renderModel() {
+        if (settingModel == null || settingItemAdapter == null)
+            return;
+
+        SettingModel.Snapshot latest = settingModel.snapshot();
+        int[] changed = latest.changedSince(renderedSnapshot);
+        renderedSnapshot = latest;
+
+        int[] positions = new int[changed.length];
+        int count = 0;
+        for (int modelPosition : changed) {
+            String key = latest.getKey(modelPosition);
+            String value = latest.getValue(modelPosition);
+            Setting setting = findSetting(key);
+            if (setting == null) {
+                // rows of a data source that are not loaded yet read the model when they load
+                continue;
+            }
+            if (value == null ? setting.getValue() == null : value.equals(setting.getValue()))
+                continue;
+
+            if (batchDepth > 0) {
+                stageBatchChange(key, value).fromModel = true;
+                continue;
+            }
+            setting.setValue(value);
+            settingItemAdapter.onValueChanged(setting);
+            if (searchIndex != null) {
+                searchIndex.onChanged(setting);
+            }
+            int position = settingItemAdapter.getPosition(key);
+            if (position >= 0) {
+                positions[count++] = position;
+            }
+        }
+        settingItemAdapter.notifySettingsChanged(positions, count);
+    }
+
+    /**
+     * Find the HEADER of a section in the whole list. The section index of the displayed list
+     * is tried first, lists differing from it, e.g. while searching, are scanned.
+     */
+    private int headerPosition(int sectionIndex) {
+        Setting header = sections.get(sectionIndex).getHeader();
+        if (!isSearching()) {
+            if (sectionHeaders == null) {
+                sectionHeaders = new SettingSectionIndex(settingItemAdapter);
+                settingItemAdapter.registerAdapterDataObserver(sectionHeaders);
+            }
+            int ordinal = 0;
+            for (int i = 0; i < sectionIndex; i++) {
+                if (sections.get(i).getHeader() != null) {
+                    ordinal++;
+                }
+            }
+            int position = sectionHeaders.headerAt(ordinal);
+            if (position >= 0 && position < settingList.size() && settingList.get(position) == header)
+                return position;
+        }
+
+        for (int i = 0; i < settingList.size(); i++) {
+            if (settingList.get(i) == header)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Notify listeners of a change made by the user, input is coalesced while typing.
+     */
+    private void deliverChange(int type, Setting setting) {
+        if (type == Setting.INPUT && inputCoalescer.isEnabled()) {
+            inputCoalescer.submit(type, setting.getKey(), setting.getValue(), setting);
+        } else {
+            dispatchChange(type, setting);
+        }
+    }
+
+    /**
+     * Record a value changed in the open batch, replacing earlier changes of the key
+     * but keeping whether listeners should see it.
+     */
+    private BatchChange stageBatchChange(String key, String value) {
+        BatchChange change = batchChanges.get(key);
+        if (change == null) {
+            change = new BatchChange();
+            batchChanges.put(key, change);
+        }
+        change.value = value;
+        change.fromView = false;
+        change.fromModel = false;
+        return change;
+    }
+
+    /**
+     * Apply a value from the journal to its row and notify listeners of it.
+     */
+    private void applyJournaled(String key, String value) {
+        // deliver pending input first so listeners see the undone value last
+        inputCoalescer.flush(key);
+        if (!updateValue(key, value))
+            return;
+
+        if (batchDepth > 0) {
+            batchChanges.get(key).notify = true;
+        } else {
+            Setting setting = findSetting(key);
+            if (setting != null) {
+                dispatchChange(setting.getType(), setting);
+            }
+        }
+    }
+
+    /**
+     * Show a list, restoring its values from the store and re-indexing it for search.
+     */
+    private void showSettingList(List<Setting> settingList) {
+        if (settingList == null) {
+            this.settingList = new ArrayList<>();
+        } else {
+            this.settingList = settingList;
+        }
+        this.dataSource = null;
+        // changes of the previous screen cannot be undone on this one
+        journal.clear();
+
+        if (settingStore != null) {
+            settingStore.hydrate(this.settingList);
+        }
+        if (searchIndex != null) {
+            searchIndex.reset(this.settingList);
+        }
+        if (settingModel != null) {
+            // values of the new settings may differ from the model anywhere
+            renderedSnapshot = null;
+            modelListener.onPublished(settingModel.snapshot());
+        }
+        applySearch();
+    }
+
     // Public Methods
 
 
     /**
      * Set the settings to display to the user.
+     * Lists of a {@link SettingSnapshot}, see {@link SettingSnapshot#asList()}, are shown with
+     * {@link #setDataSource(SettingDataSource)} instead, so their rows are only decoded when shown.
      * @param settingList collection of {@link Setting}
      */
     public void setSettingList(List<Setting> settingList) {
-        if (settingList == null) {
+        this.sections = null;
+        SettingSnapshot snapshot = SettingSnapshot.backing(settingList);
+        if (snapshot != null) {
             this.settingList = new ArrayList<>();
+            if (searchIndex != null) {
+                searchIndex.reset(this.settingList);
+            }
+            setDataSource(new SnapshotDataSource(snapshot));
+            return;
+        }
+        showSettingList(settingList);
+    }
+
+    /**
+     * Set the settings to display as collapsible sections. Clicking a header expands or collapses
+     * its section; children of collapsed sections are not added to the list, and lazily loaded
+     * sections build their children and restore their values from the store when first expanded.
+     * Searching only covers the rows of expanded sections.
+     * @param sections sections in display order, see {@link SettingSection#split(List, boolean)}
+     */
+    public void setSections(List<SettingSection> sections) {
+        this.sections = sections;
+        List<Setting> visible = new ArrayList<>();
+        for (SettingSection section : sections) {
+            visible.addAll(section.getVisibleSettings());
+        }
+        showSettingList(visible);
+    }
+
+    /**
+     * Expand or collapse a section set with {@link #setSections(List)},
+     * inserting or removing only the rows of its children.
+     * @param sectionIndex index of the section
+     * @param expanded whether the children should be shown
+     */
+    public void setSectionExpanded(int sectionIndex, boolean expanded) {
+        SettingSection section = sections.get(sectionIndex);
+        if (section.getHeader() == null || section.isExpanded() == expanded)
+            return;
+
+        int headerPosition = headerPosition(sectionIndex);
+        if (headerPosition < 0)
+            return;
+
+        int childStart = headerPosition + 1;
+        List<Setting> children;
+        if (expanded) {
+            boolean firstLoad = !section.isLoaded();
+            children = section.getChildren();
+            if (firstLoad && settingStore != null) {
+                settingStore.hydrate(children);
+            }
         } else {
-            this.settingList = settingList;
+            // the rows actually shown, settings may have been inserted or removed since expanding
+            int childEnd = childStart;
+            while (childEnd < settingList.size() && settingList.get(childEnd).getType() != Setting.HEADER) {
+                childEnd++;
+            }
+            children = new ArrayList<>(settingList.subList(childStart, childEnd));
+            section.setChildren(children);
+        }
+        section.setExpanded(expanded);
+
+        if (searchIndex != null) {
+            for (Setting child : children) {
+                if (expanded) {
+                    searchIndex.onInserted(child);
+                } else {
+                    searchIndex.onRemoved(child);
+                }
+            }
+        }
+        if (isSearching()) {
+            if (expanded) {
+                settingList.addAll(childStart, children);
+            } else {
+                settingList.subList(childStart, childStart + children.size()).clear();
+            }
+            applySearch();
+        } else if (expanded) {
+            settingItemAdapter.insertSettings(childStart, children);
+        } else {
+            settingItemAdapter.removeSettings(childStart, children.size());
+        }
+    }
+
+    /**
+     * @param sectionIndex index of a section set with {@link #setSections(List)}
+     * @return whether the section's children are shown
+     */
+    public boolean isSectionExpanded(int sectionIndex) {
+        return sections.get(sectionIndex).isExpanded();
+    }
+
+    /**
+     * Persist setting values. Values of the current and future setting lists are
+     * restored from the store, and every change made through this fragment is recorded in it.
+     * Pending changes start writing when the fragment stops, without blocking the main thread.
+     * @param settingStore {@link SettingStore} or null to stop persisting
+     */
+    public void setSettingStore(SettingStore settingStore) {
+        this.settingStore = settingStore;
+        if (settingStore != null) {
+            settingStore.hydrate(settingList);
+            if (searchIndex != null) {
+                searchIndex.reset(settingList);
+            }
+            if (settingItemAdapter != null) {
+                applySearch();
+            }
         }
+    }
 
-        this.settingItemAdapter.setSettingList(this.settingList);
+    /**
+     * Find a setting by key.
+     * @param key {@link Setting#getKey()}
+     * @return the setting or null if not found
+     */
+    public Setting getSetting(String key) {
+        return findSetting(key);
+    }
+
+    /**
+     * Change the value of a setting and refresh only its row.
+     * The {@link SettingItemAdapter.OnSettingChangeListener} is not notified.
+     * @param key {@link Setting#getKey()}
+     * @param value new value
+     * @return true if a setting with the key was found
+     */
+    public boolean updateValue(String key, String value) {
+        if (batchDepth > 0) {
+            if (findSetting(key) == null)
+                return false;
+
+            stageBatchChange(key, value);
+            return true;
+        }
+        if (!settingItemAdapter.updateValue(key, value)) {
+            // hidden by the current search
+            Setting hidden = isSearching() ? findSetting(key) : null;
+            if (hidden == null)
+                return false;
+
+            hidden.setValue(value);
+        }
+
+        if (searchIndex != null) {
+            searchIndex.onChanged(findSetting(key));
+        }
+        if (settingModel != null) {
+            settingModel.publish(key, value);
+        }
+        if (settingStore != null) {
+            settingStore.put(key, value);
+        }
+        return true;
+    }
+
+    /**
+     * Insert a setting and refresh only its row.
+     * While searching the search results are refreshed instead.
+     * @param position position to insert at, in the whole list
+     * @param setting {@link Setting} to insert
+     */
+    public void insertSetting(int position, Setting setting) {
+        if (searchIndex != null) {
+            searchIndex.onInserted(setting);
+        }
+        if (isSearching()) {
+            settingList.add(position, setting);
+            applySearch();
+        } else {
+            settingItemAdapter.insertSetting(position, setting);
+        }
+    }
+
+    /**
+     * Remove a setting and refresh only its row.
+     * While searching the search results are refreshed instead.
+     * @param key {@link Setting#getKey()}
+     * @return the removed setting or null if not found
+     */
+    public Setting removeSetting(String key) {
+        Setting removed;
+        if (isSearching()) {
+            removed = findSetting(key);
+            if (removed != null) {
+                settingList.remove(removed);
+                applySearch();
+            }
+        } else {
+            removed = settingItemAdapter.removeSetting(key);
+        }
+
+        if (removed != null && searchIndex != null) {
+            searchIndex.onRemoved(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Load settings page by page from a data source instead of keeping them all in memory.
+     * Rows show placeholders while their page loads. Searching, inserting and removing settings
+     * are not supported for data sources, {@link #setSettingList(List)} switches back to a list.
+     * @param dataSource {@link SettingDataSource} to load from, e.g. a {@link SnapshotDataSource}
+     */
+    public void setDataSource(SettingDataSource dataSource) {
+        this.dataSource = dataSource;
+        journal.clear();
+        if (settingItemAdapter != null) {
+            settingItemAdapter.setDataSource(dataSource);
+        }
+    }
+
+    /**
+     * Scroll to a setting, loading it from the data source if needed.
+     * @param key {@link Setting#getKey()}
+     */
+    public void scrollToKey(String key) {
+        settingItemAdapter.findPosition(key, new PagedSettingList.OnPositionFoundListener() {
+            @Override
+            public void onPositionFound(int position) {
+                if (position >= 0 && recyclerView != null) {
+                    ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(position, 0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Show only the settings whose title, value or key contain the query, together with
+     * the HEADERs of their sections. Queries shorter than three characters match the start of words.
+     * The index is built on the first search and kept up to date as values change;
+     * rows whose value stops matching stay visible until the next query.
+     * @param query text to search for, null or empty to show every setting
+     */
+    public void search(String query) {
+        searchQuery = query;
+        if (isSearching() && searchIndex == null) {
+            searchIndex = new SettingSearchIndex(settingList);
+        }
+        if (settingItemAdapter != null) {
+            applySearch();
+        }
+    }
+
+    /**
+     * @return the current search query or null
+     */
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+
+    /**
+     * Save the shown setting list with the instance state, for hosts that do not set it again when recreated.
+     * Lists above {@link SettingList#DEFAULT_SPILL_THRESHOLD} are written to the cache directory instead.
+     * @param saveSettingList true to save the list, false by default
+     */
+    public void setSaveSettingList(boolean saveSettingList) {
+        this.saveSettingList = saveSettingList;
+    }
+
+    /**
+     * Set whether list updates should detect moved items.
+     * Turn off for very large lists where move detection is too costly.
+     * @param detectMoves false to skip move detection
+     */
+    public void setDetectMoves(boolean detectMoves) {
+        this.detectMoves = detectMoves;
+        if (settingItemAdapter != null) {
+            settingItemAdapter.setDetectMoves(detectMoves);
+        }
+    }
+
+    /**
+     * Diff new lists and search results on a background thread instead of the main thread.
+     * Only the latest list is displayed when several are set in quick succession.
+     * @param asyncDiff true to diff in the background, false by default
+     */
+    public void setAsyncDiff(boolean asyncDiff) {
+        this.asyncDiff = asyncDiff;
+    }
+
+    /**
+     * Share recycled rows with other setting screens. Use a {@link SettingViewPool}
+     * to size the pool per view type and to pre-inflate rows. Rows report their events to the fragment
+     * showing them and flat rows get their own view types, so fragments with different render modes
+     * can share one pool.
+     * Must be called before the fragment's view is created.
+     * @param viewPool pool shared between fragments of the same activity
+     */
+    public void setRecycledViewPool(RecyclerView.RecycledViewPool viewPool) {
+        this.viewPool = viewPool;
+    }
+
+    /**
+     * Pre-inflate rows of every view type inflated in the render mode on a background thread when the view is created.
+     * Uses the {@link SettingViewPool} set with {@link #setRecycledViewPool(RecyclerView.RecycledViewPool)},
+     * or a new one for this fragment.
+     * Must be called before the fragment's view is created.
+     * @param countPerType rows to inflate per view type, 0 to disable (default)
+     */
+    public void setPrewarmCount(int countPerType) {
+        this.prewarmCount = countPerType;
+        if (countPerType > 0 && viewPool == null) {
+            viewPool = new SettingViewPool();
+        }
+    }
+
+    /**
+     * Draw title and value rows with a single {@link SettingRowView} instead of inflating their layouts.
+     * Must be called before the fragment's view is created.
+     * @param renderMode {@link SettingItemAdapter#RENDER_XML} (default) or {@link SettingItemAdapter#RENDER_FLAT}
+     */
+    public void setRenderMode(int renderMode) {
+        this.renderMode = renderMode;
+    }
+
+    /**
+     * Pin the HEADER of the topmost section to the top of the list while scrolling.
+     * @param stickyHeaders true to pin headers, false by default
+     */
+    public void setStickyHeaders(boolean stickyHeaders) {
+        this.stickyHeaders = stickyHeaders;
+        if (recyclerView == null)
+            return;
+
+        if (stickyHeaders && stickyHeaderItem == null) {
+            stickyHeaderItem = new StickyHeaderItem(settingItemAdapter);
+            recyclerView.addItemDecoration(stickyHeaderItem);
+        } else if (!stickyHeaders && stickyHeaderItem != null) {
+            recyclerView.removeItemDecoration(stickyHeaderItem);
+            stickyHeaderItem.release();
+            stickyHeaderItem = null;
+        }
+    }
+
+    /**
+     * Coalesce rapid changes of INPUT settings. The listener set with
+     * {@link #setOnSettingChangeListener(SettingItemAdapter.OnSettingChangeListener)} then only
+     * receives the latest value of a key once it has not changed for the quiet period,
+     * when its input loses focus or when the fragment pauses.
+     * @param quietPeriodMillis quiet period in milliseconds, 0 to deliver every change (default)
+     */
+    public void setInputQuietPeriod(long quietPeriodMillis) {
+        inputCoalescer.setQuietPeriod(quietPeriodMillis);
+    }
+
+    /**
+     * Call the listeners of coalesced INPUT changes on an executor instead of the main thread,
+     * so slow listeners do not block scrolling and typing. See {@link #setInputQuietPeriod(long)}.
+     * The typed listener then receives a copy of the setting holding the delivered value.
+     * @param executor executor to deliver on, a single thread keeps the changes of a key in order;
+     *                 null to deliver on the main thread (default)
+     */
+    public void setInputDeliveryExecutor(Executor executor) {
+        inputCoalescer.setDeliveryExecutor(executor);
     }
 
     /**
@@ -113,9 +846,216 @@ public class SettingItemFragment extends Fragment implements SettingItemAdapter.
         this.settingChangeListener = listener;
     }
 
+    /**
+     * Keep the displayed values in sync with a thread safe model. Values published to the model
+     * from any thread are applied to the displayed settings on the main thread, one consistent
+     * snapshot at a time; changes made by the user are published to the model.
+     * Listeners are not called for values coming from the model.
+     * @param settingModel {@link SettingModel} or null to stop following a model
+     */
+    public void setSettingModel(SettingModel settingModel) {
+        if (this.settingModel != null) {
+            this.settingModel.removeListener(modelListener);
+        }
+        this.settingModel = settingModel;
+        this.renderedSnapshot = null;
+        if (settingModel != null) {
+            settingModel.addListener(modelListener);
+            modelListener.onPublished(settingModel.snapshot());
+        }
+    }
+
+    /**
+     * Start collecting changes. Until the matching {@link #commit()}, values set through
+     * {@link #updateValue(String, String)} or by the model are staged and the settings keep their
+     * old values, changes made by the user only reach the row they were made in. Nothing is written
+     * to the store or the model and listeners are not called. Batches can be nested,
+     * only the outermost commit applies the changes.
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Apply the changes collected since {@link #beginBatch()} at once: staged values are set,
+     * their rows are refreshed with one notification per run of adjacent rows, every value is
+     * written to the store and the model, and the
+     * {@link SettingItemAdapter.OnSettingBatchChangeListener} receives every changed key at once.
+     * Without a batch listener the other listeners are called per setting as usual.
+     * @throws IllegalStateException if no batch is open
+     */
+    public void commit() {
+        if (batchDepth == 0)
+            throw new IllegalStateException("commit() called without beginBatch()");
+
+        if (--batchDepth > 0 || batchChanges.isEmpty())
+            return;
+
+        Map<String, BatchChange> changes = new LinkedHashMap<>(batchChanges);
+        batchChanges.clear();
+
+        int[] positions = new int[changes.size()];
+        int count = 0;
+        for (Map.Entry<String, BatchChange> entry : changes.entrySet()) {
+            String key = entry.getKey();
+            BatchChange change = entry.getValue();
+            Setting setting = findSetting(key);
+            // rows changed by the user already show their value, rebinding them would reset the cursor
+            if (setting != null && !change.fromView) {
+                setting.setValue(change.value);
+                settingItemAdapter.onValueChanged(setting);
+                if (searchIndex != null) {
+                    searchIndex.onChanged(setting);
+                }
+                int position = settingItemAdapter.getPosition(key);
+                if (position >= 0) {
+                    positions[count++] = position;
+                }
+            }
+            if (settingModel != null && !change.fromModel) {
+                settingModel.publish(key, change.value);
+            }
+            if (settingStore != null) {
+                settingStore.put(key, change.value);
+            }
+        }
+        settingItemAdapter.notifySettingsChanged(positions, count);
+
+        if (batchChangeListener != null) {
+            batchChangeListener.settingsChanged(new ArrayList<>(changes.keySet()));
+            if (changeStream != null) {
+                for (Map.Entry<String, BatchChange> change : changes.entrySet()) {
+                    Setting setting = change.getValue().notify ? findSetting(change.getKey()) : null;
+                    if (setting != null) {
+                        changeStream.publish(setting.getType(), setting.getKey(), setting.getValue());
+                    }
+                }
+            }
+            return;
+        }
+        for (Map.Entry<String, BatchChange> change : changes.entrySet()) {
+            Setting setting = change.getValue().notify ? findSetting(change.getKey()) : null;
+            if (setting != null) {
+                dispatchChange(setting.getType(), setting);
+            }
+        }
+    }
+
+    /**
+     * Run changes as one batch, see {@link #beginBatch()} and {@link #commit()}.
+     * @param changes makes the changes, e.g. through {@link #updateValue(String, String)}
+     */
+    public void runBatch(Runnable changes) {
+        beginBatch();
+        try {
+            changes.run();
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * Set how many changes made by the user can be undone, dropping the changes recorded so far.
+     * @param capacity maximum number of changes kept, the oldest are dropped first
+     */
+    public void setUndoCapacity(int capacity) {
+        journal = new SettingChangeJournal(capacity);
+    }
+
+    /**
+     * Revert the last value change made by the user, refreshing only its row.
+     * Listeners are notified of the reverted value.
+     * @return true if a change was undone
+     */
+    public boolean undo() {
+        int slot = journal.undo();
+        if (slot < 0)
+            return false;
+
+        applyJournaled(journal.keyAt(slot), journal.oldValueAt(slot));
+        return true;
+    }
+
+    /**
+     * Apply the last undone change again, refreshing only its row.
+     * @return true if a change was redone
+     */
+    public boolean redo() {
+        int slot = journal.redo();
+        if (slot < 0)
+            return false;
+
+        applyJournaled(journal.keyAt(slot), journal.newValueAt(slot));
+        return true;
+    }
+
+    /**
+     * @return true if {@link #undo()} has a change to revert
+     */
+    public boolean canUndo() {
+        return journal.canUndo();
+    }
+
+    /**
+     * @return true if {@link #redo()} has a change to apply
+     */
+    public boolean canRedo() {
+        return journal.canRedo();
+    }
+
+    /**
+     * Publish changes to a stream, where any number of subscribers can watch keys, key prefixes or types.
+     * Receives the same changes as the {@link SettingItemAdapter.OnSettingChangeListener}.
+     * @param changeStream {@link SettingChangeStream}, possibly shared with other fragments, or null
+     */
+    public void setChangeStream(SettingChangeStream changeStream) {
+        this.changeStream = changeStream;
+    }
+
+    /**
+     * @return the stream changes are published to, created on first call if none was set
+     */
+    public SettingChangeStream getChangeStream() {
+        if (changeStream == null) {
+            changeStream = new SettingChangeStream();
+        }
+        return changeStream;
+    }
+
+    /**
+     * Set a listener to receive all settings changed in a batch with one call.
+     * @param listener {@link com.example.settingadapter.ui.SettingItemAdapter.OnSettingBatchChangeListener}
+     */
+    public void setOnSettingBatchChangeListener(SettingItemAdapter.OnSettingBatchChangeListener listener) {
+        this.batchChangeListener = listener;
+    }
+
+    /**
+     * Set a listener to receive changed settings without converting their values to Strings.
+     * Can be used together with {@link #setOnSettingChangeListener(SettingItemAdapter.OnSettingChangeListener)}.
+     * @param listener {@link com.example.settingadapter.ui.SettingItemAdapter.OnTypedSettingChangeListener}
+     */
+    public void setOnTypedSettingChangeListener(SettingItemAdapter.OnTypedSettingChangeListener listener) {
+        this.typedSettingChangeListener = listener;
+    }
+
+    /**
+     * Apply a value picked in a dialog. The setting keeps its old value until
+     * {@link #settingItemChanged(int, int, Object)} applies it, so the change is journaled for undo.
+     * @param setting the setting the dialog was shown for
+     * @param value picked value
+     */
+    void pickedValue(Setting setting, Object value) {
+        shouldRefresh = true;
+        settingItemChanged(setting.getType(), settingItemAdapter.getPosition(setting.getKey()), value);
+    }
+
     @Override
     public void settingItemClick(final int type, final int index) {
-        final Setting setting = settingList.get(index);
+        final Setting setting = settingItemAdapter.getSettingAt(index);
+        if (setting == null)
+            return;
+
         switch (type) {
             case Setting.DATE:
 
@@ -124,40 +1064,42 @@ public class SettingItemFragment extends Fragment implements SettingItemAdapter.
                 TimePickerDialog.OnTimeSetListener timeSetListener = new TimePickerDialog.OnTimeSetListener() {
                     @Override
                     public void onTimeSet(TimePicker timePicker, int hour, int min) {
-                        String value = String.format(Locale.getDefault(), "%d:%d", hour, min);
-                        setting.setValue(value);
-                        shouldRefresh = true;
-                        settingItemChanged(type, index, value);
+                        pickedValue(setting, TimeCodec.pack(hour, min));
                     }
                 };
                 //Context context, TimePickerDialog.OnTimeSetListener listener, int hourOfDay, int minute, boolean is24HourView)
-                Date time = Utils.getTimeFromSetting(setting.getValue());
-                int hour = Utils.getHour(time);
-                int min = Utils.getMinute(time);
+                int time = setting.getTime();
+                if (time == TimeCodec.INVALID) {
+                    time = TimeCodec.parseOrNow(null);
+                }
+                int hour = TimeCodec.hour(time);
+                int min = TimeCodec.minute(time);
 
                 TimePickerDialog timeDialog = new TimePickerDialog(getContext(), timeSetListener, hour, min, false);
                 timeDialog.show();
                 break;
             case Setting.LIST:
-                listDialog = new Dialog(getContext());
-                listDialog.setContentView(R.layout.dialog_list);
-                ListView listView = (ListView) listDialog.findViewById(R.id.dialog_listView);
-                ArrayAdapter<String> adapter = new ArrayAdapter<>(getContext(), android.R.layout.simple_list_item_1, setting.getOptions());
-                listView.setAdapter(adapter);
-                listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+                if (optionPicker == null) {
+                    optionPicker = new OptionPicker(getContext());
+                }
+                optionPicker.show(setting.getOptions(), setting.getValue(), new OptionPicker.OnOptionSelectedListener() {
                     @Override
-                    public void onItemClick(AdapterView<?> adapterView, View view, int i, long l) {
-                        setting.setValue(setting.getOptions().get(i));
-                        shouldRefresh = true;
-                        settingItemChanged(type, index, setting.getOptions().get(i));
+                    public void optionSelected(int index, String option) {
+                        pickedValue(setting, option);
                     }
                 });
-                listDialog.setCancelable(true);
-                listDialog.show();
                 break;
             case Setting.SELECTABLE_ITEM:
-                if (settingChangeListener != null) {
-                    settingChangeListener.settingItemChanged(type, setting.getKey(), setting.getValue());
+                dispatchChange(type, setting);
+                break;
+            case Setting.HEADER:
+                if (sections != null) {
+                    for (int i = 0; i < sections.size(); i++) {
+                        if (sections.get(i).getHeader() == setting) {
+                            setSectionExpanded(i, !sections.get(i).isExpanded());
+                            break;
+                        }
+                    }
                 }
                 break;
             default:
@@ -167,23 +1109,72 @@ public class SettingItemFragment extends Fragment implements SettingItemAdapter.
 
     @Override
     public void settingItemChanged(int type, int index, Object newValue) {
-        String value = Utils.parseObject(newValue);
-
-        Setting selected = settingList.get(index);
-        if (selected != null) {
-            if (selected.getKey() != null && !selected.getKey().isEmpty()) {
-                selected.setValue(value);
-                if (settingChangeListener != null) {
-                    settingChangeListener.settingItemChanged(type, selected.getKey(), value);
+        Setting selected = settingItemAdapter.getSettingAt(index);
+        int position = index;
+        if (selected != null && selected.getKey() != null && !selected.getKey().isEmpty()) {
+            // a list still being diffed is displayed first, so the change reaches its instance of the setting
+            Setting current = findSetting(selected.getKey());
+            if (current != null) {
+                selected = current;
+            }
+            position = settingItemAdapter.getPosition(selected.getKey());
+
+            String oldValue = selected.getValue();
+            applyValue(type, selected, newValue);
+            settingItemAdapter.onValueChanged(selected);
+            if (!TextUtils.equals(oldValue, selected.getValue())) {
+                // typing into an input is undone as one change, unless the user paused typing
+                long mergeWindow = inputCoalescer.isEnabled() ? inputCoalescer.getQuietPeriod() : INPUT_MERGE_MILLIS;
+                journal.record(selected.getKey(), oldValue, selected.getValue(), type == Setting.INPUT ? mergeWindow : 0);
+            }
+            if (searchIndex != null) {
+                searchIndex.onChanged(selected);
+            }
+            if (batchDepth > 0) {
+                BatchChange change = stageBatchChange(selected.getKey(), selected.getValue());
+                change.notify = true;
+                // values picked in a dialog are not shown by the row until it is refreshed
+                change.fromView = !shouldRefresh;
+            } else {
+                if (settingModel != null) {
+                    settingModel.publish(selected.getKey(), selected.getValue());
                 }
+                if (settingStore != null) {
+                    settingStore.put(selected.getKey(), selected.getValue());
+                }
+                deliverChange(type, selected);
             }
         }
         if (shouldRefresh) {
-            if (listDialog != null) {
-                listDialog.dismiss();
+            if (optionPicker != null) {
+                optionPicker.dismiss();
+            }
+            if (selected != null && batchDepth == 0 && position >= 0) {
+                settingItemAdapter.notifySettingChanged(position);
             }
-            settingItemAdapter.setSettingList(this.settingList);
             shouldRefresh = false;
         }
     }
+
+    @Override
+    public void settingItemEditFinished(int type, int index) {
+        Setting setting = settingItemAdapter.getSettingAt(index);
+        if (setting != null) {
+            inputCoalescer.flush(setting.getKey());
+        }
+    }
+
+
+    /**
+     * A value changed in the open batch.
+     */
+    private static class BatchChange {
+        String value;
+        /** Whether the change listeners should see it. */
+        boolean notify;
+        /** Made by the user in its row, e.g. typed or switched, which already shows the value. */
+        boolean fromView;
+        /** Published by the model, which must not get it back. */
+        boolean fromModel;
+    }
 }
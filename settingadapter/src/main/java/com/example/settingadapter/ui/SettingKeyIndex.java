@@ -0,0 +1,182 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import com.example.settingadapter.model.Setting;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index from {@link Setting#getKey()} to position in a setting list.
+ * Inserts and removes do not rewrite the positions after them, they are logged as shifts
+ * and applied to an entry when it is looked up. The whole list is re-indexed on the
+ * next lookup once the log is full, so each change costs O(n / MAX_SHIFTS) amortized.
+ */
+class SettingKeyIndex {
+
+    // Constants
+    private static final int MAX_SHIFTS = 32;
+
+    // Private Variables
+    /** Position in the low 32 bits, number of shifts logged when it was indexed in the high bits. */
+    private final Map<String, Long> positions = new HashMap<>();
+    private List<Setting> settingList;
+    private boolean indexed = false;
+
+    /** Positions at or after shiftFrom[i] moved by shiftBy[i]. */
+    private final int[] shiftFrom = new int[MAX_SHIFTS];
+    private final int[] shiftBy = new int[MAX_SHIFTS];
+    private int shiftCount = 0;
+
+    // Constructors
+
+    SettingKeyIndex(List<Setting> settingList) {
+        reset(settingList);
+    }
+
+    // Private Methods
+
+    private static boolean hasKey(Setting setting) {
+        return setting.getKey() != null && !setting.getKey().isEmpty();
+    }
+
+    private void put(String key, int position) {
+        positions.put(key, (long) shiftCount << 32 | position);
+    }
+
+    private void index() {
+        positions.clear();
+        shiftCount = 0;
+        for (int i = 0; i < settingList.size(); i++) {
+            Setting setting = settingList.get(i);
+            if (hasKey(setting)) {
+                put(setting.getKey(), i);
+            }
+        }
+        indexed = true;
+    }
+
+    /**
+     * @return position of the entry after the shifts logged since it was indexed, -1 if there is none
+     */
+    private int current(String key) {
+        Long entry = positions.get(key);
+        if (entry == null)
+            return -1;
+
+        int position = (int) (long) entry;
+        for (int i = (int) (entry >>> 32); i < shiftCount; i++) {
+            if (position >= shiftFrom[i]) {
+                position += shiftBy[i];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Log a shift, or drop the index to rebuild it on the next lookup when the log is full.
+     * @return true if the shift was logged
+     */
+    private boolean logShift(int from, int by) {
+        if (shiftCount == MAX_SHIFTS) {
+            indexed = false;
+            return false;
+        }
+        shiftFrom[shiftCount] = from;
+        shiftBy[shiftCount] = by;
+        shiftCount++;
+        return true;
+    }
+
+    // Public Methods
+
+    /**
+     * Index a new list, dropping everything indexed so far.
+     * @param settingList collection of {@link Setting}, may be null
+     */
+    void reset(List<Setting> settingList) {
+        this.settingList = settingList;
+        positions.clear();
+        shiftCount = 0;
+        indexed = false;
+    }
+
+    /**
+     * Find the position of a setting.
+     * @param key {@link Setting#getKey()}
+     * @return position in the list or -1 when no setting has the key
+     */
+    int positionOf(String key) {
+        if (key == null || settingList == null)
+            return -1;
+
+        if (!indexed) {
+            index();
+        }
+        int position = current(key);
+        if (position < 0 || position < settingList.size() && key.equals(settingList.get(position).getKey()))
+            return position;
+
+        // the list was changed without telling the index
+        index();
+        position = current(key);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Record that settings were inserted into the list.
+     * @param position position of the first new setting
+     * @param inserted the inserted settings
+     */
+    void onInserted(int position, List<Setting> inserted) {
+        if (!indexed || !logShift(position, inserted.size()))
+            return;
+
+        for (int i = 0; i < inserted.size(); i++) {
+            Setting setting = inserted.get(i);
+            if (hasKey(setting)) {
+                put(setting.getKey(), position + i);
+            }
+        }
+    }
+
+    /**
+     * Record that settings are removed from the list, called before they are removed.
+     * @param position position of the first removed setting
+     * @param removed the removed settings
+     */
+    void onRemoved(int position, List<Setting> removed) {
+        if (!indexed)
+            return;
+
+        for (Setting setting : removed) {
+            if (hasKey(setting)) {
+                positions.remove(setting.getKey());
+            }
+        }
+        logShift(position + removed.size(), -removed.size());
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+/**
+ * Measured and ellipsized text of a {@link SettingRowView} for one width.
+ * Instances are immutable so they can be computed off the main thread.
+ */
+final class SettingRowLayout {
+
+    // Private Variables
+    final CharSequence title;
+    final CharSequence value;
+    final int width;
+    final CharSequence drawnTitle;
+    final CharSequence drawnValue;
+    final float titleWidth;
+    final float valueWidth;
+
+    // Constructors
+
+    private SettingRowLayout(CharSequence title, CharSequence value, int width,
+                             CharSequence drawnTitle, CharSequence drawnValue, float titleWidth, float valueWidth) {
+        this.title = title;
+        this.value = value;
+        this.width = width;
+        this.drawnTitle = drawnTitle;
+        this.drawnValue = drawnValue;
+        this.titleWidth = titleWidth;
+        this.valueWidth = valueWidth;
+    }
+
+    // Public Methods
+
+    /**
+     * Measure a row. The value keeps its full width unless it would take more than half the row,
+     * the title is ellipsized to whatever is left.
+     * @param title text drawn on the start side, not null
+     * @param value text drawn on the end side, not null
+     * @param width width of the row
+     * @param titlePaint paint of the title, must not be used by another thread meanwhile
+     * @param valuePaint paint of the value, must not be used by another thread meanwhile
+     * @param padding padding on each side
+     * @param gap minimum space between title and value
+     * @return the layout
+     */
+    static SettingRowLayout compute(CharSequence title, CharSequence value, int width,
+                                    TextPaint titlePaint, TextPaint valuePaint, int padding, int gap) {
+        int contentWidth = Math.max(0, width - padding * 2);
+
+        CharSequence drawnValue = value;
+        float valueWidth = valuePaint.measureText(value, 0, value.length());
+        if (valueWidth > contentWidth / 2f && title.length() > 0) {
+            drawnValue = TextUtils.ellipsize(value, valuePaint, contentWidth / 2f, TextUtils.TruncateAt.END);
+            valueWidth = valuePaint.measureText(drawnValue, 0, drawnValue.length());
+        }
+
+        float titleWidth = contentWidth - (valueWidth > 0 ? valueWidth + gap : 0);
+        CharSequence drawnTitle = TextUtils.ellipsize(title, titlePaint, Math.max(0, titleWidth), TextUtils.TruncateAt.END);
+        return new SettingRowLayout(title, value, width, drawnTitle, drawnValue,
+                titlePaint.measureText(drawnTitle, 0, drawnTitle.length()), valueWidth);
+    }
+
+    /**
+     * @param title text drawn on the start side
+     * @param value text drawn on the end side
+     * @param width width of the row
+     * @return true if this layout can be drawn for the given text and width
+     */
+    boolean matches(CharSequence title, CharSequence value, int width) {
+        return this.width == width && TextUtils.equals(this.title, title) && TextUtils.equals(this.value, value);
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.example.settingadapter.R;
+
+/**
+ * Single view drawing a setting row with a title on the start side and a value on the end side,
+ * matching the look of <c>recycler_item_setting_list.xml</c>, mirrored in right-to-left layouts.
+ * Accessibility services read the title and value, built only when they ask for it.
+ * The row is always one line high, so changing either text only redraws the view and never
+ * triggers another measure and layout pass. Ellipsized text and positions are cached
+ * in a {@link SettingRowLayout} until the text or the width changes.
+ */
+public class SettingRowView extends View {
+
+    // Constants
+    private static final int GAP_DP = 10;
+
+    // Private Variables
+    private final TextPaint titlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint valuePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final int padding;
+    private final int gap;
+    private final int rowHeight;
+    private final int baseline;
+
+    private CharSequence title = "";
+    private CharSequence value = "";
+
+    // cached layout, valid while its width matches the view width
+    private SettingRowLayout layout;
+
+    // Constructors
+
+    public SettingRowView(Context context) {
+        super(context);
+
+        // same resources as the XML rows, so both render modes follow the app's overrides
+        Resources resources = context.getResources();
+        DisplayMetrics metrics = resources.getDisplayMetrics();
+        padding = resources.getDimensionPixelSize(R.dimen.settingRowPadding);
+        gap = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, GAP_DP, metrics);
+
+        titlePaint.setTextSize(resources.getDimension(R.dimen.settingTitleSize));
+        titlePaint.setColor(ContextCompat.getColor(context, R.color.colorDarkText));
+        valuePaint.setTextSize(resources.getDimension(R.dimen.settingValueSize));
+        valuePaint.setColor(ContextCompat.getColor(context, R.color.colorLightText));
+
+        Paint.FontMetricsInt titleMetrics = titlePaint.getFontMetricsInt();
+        rowHeight = padding * 2 + (titleMetrics.descent - titleMetrics.ascent);
+        baseline = padding - titleMetrics.ascent;
+
+        setBackgroundResource(R.drawable.recycler_item_selector);
+        setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+    }
+
+    // Private Methods
+
+    private void invalidateText() {
+        layout = null;
+        invalidate();
+    }
+
+    private CharSequence accessibilityText() {
+        if (value.length() == 0)
+            return title;
+
+        return new StringBuilder(title.length() + 2 + value.length()).append(title).append(", ").append(value);
+    }
+
+    // Public Methods
+
+    /**
+     * @param title text drawn on the start side
+     */
+    public void setTitle(CharSequence title) {
+        if (title == null)
+            title = "";
+
+        if (!TextUtils.equals(this.title, title)) {
+            this.title = title;
+            invalidateText();
+        }
+    }
+
+    /**
+     * @param value text drawn on the end side
+     */
+    public void setValue(CharSequence value) {
+        if (value == null)
+            value = "";
+
+        if (!TextUtils.equals(this.value, value)) {
+            this.value = value;
+            invalidateText();
+        }
+    }
+
+    /**
+     * Show text measured ahead of time, e.g. by {@link SettingTextPrecomputer}.
+     * @param layout layout for the text to show
+     */
+    void setLayout(SettingRowLayout layout) {
+        if (this.layout != layout) {
+            this.title = layout.title;
+            this.value = layout.value;
+            this.layout = layout;
+            invalidate();
+        }
+    }
+
+    /**
+     * Measure text for this row's style. Uses this view's paints, so a view used for
+     * measuring on a background thread must not be drawn.
+     * @param title text drawn on the start side
+     * @param value text drawn on the end side
+     * @param width width of the row
+     * @return the layout
+     */
+    SettingRowLayout computeLayout(CharSequence title, CharSequence value, int width) {
+        return SettingRowLayout.compute(title == null ? "" : title, value == null ? "" : value,
+                width, titlePaint, valuePaint, padding, gap);
+    }
+
+    /**
+     * @param color color of the value text
+     */
+    public void setValueColor(int color) {
+        valuePaint.setColor(color);
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(getDefaultSize(0, widthMeasureSpec), resolveSize(rowHeight, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (layout == null || layout.width != getWidth()) {
+            layout = computeLayout(title, value, getWidth());
+        }
+        boolean rtl = getLayoutDirection() == LAYOUT_DIRECTION_RTL;
+        float titleX = rtl ? getWidth() - padding - layout.titleWidth : padding;
+        float valueX = rtl ? padding : getWidth() - padding - layout.valueWidth;
+        canvas.drawText(layout.drawnTitle, 0, layout.drawnTitle.length(), titleX, baseline, titlePaint);
+        if (layout.drawnValue.length() > 0) {
+            canvas.drawText(layout.drawnValue, 0, layout.drawnValue.length(), valueX, baseline, valuePaint);
+        }
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setContentDescription(accessibilityText());
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        event.getText().add(accessibilityText());
+    }
+}
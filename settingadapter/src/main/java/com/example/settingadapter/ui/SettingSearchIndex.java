@@ -0,0 +1,282 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import com.example.settingadapter.model.Setting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search index over the titles, values and keys of a setting list.
+ * Queries of three or more characters match anywhere in the text through a trigram index,
+ * shorter queries match the start of words through a word prefix index.
+ * Candidates from the smallest posting set are verified against the text, so a query only
+ * touches the settings sharing its rarest gram instead of the whole list.
+ * Settings are re-indexed one at a time as their values change.
+ */
+class SettingSearchIndex {
+
+    // Constants
+    private static final int GRAM = 3;
+    private static final long PREFIX = 1L << 50;
+
+    // Private Variables
+    private final Map<Setting, Document> documents = new IdentityHashMap<>();
+    private final Map<Long, Set<Document>> postings = new HashMap<>();
+    private List<Setting> settingList;
+
+    /** Position of the closest HEADER at or above each position, -1 if none. */
+    private int[] headers = new int[0];
+    private boolean positionsValid = false;
+
+    // Constructors
+
+    SettingSearchIndex(List<Setting> settingList) {
+        reset(settingList);
+    }
+
+    // Private Methods
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static String textOf(Setting setting) {
+        return normalize(setting.getTitle()) + '\n' + normalize(setting.getValue()) + '\n' + normalize(setting.getKey());
+    }
+
+    private static long gram(CharSequence text, int start, int length) {
+        long gram = length;
+        for (int i = 0; i < length; i++) {
+            gram = (gram << 16) | text.charAt(start + i);
+        }
+        return gram;
+    }
+
+    private static Set<Long> gramsOf(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(gram(text, i, GRAM));
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))) {
+                for (int length = 1; length < GRAM && i + length <= text.length(); length++) {
+                    grams.add(PREFIX | gram(text, i, length));
+                }
+            }
+        }
+        return grams;
+    }
+
+    private Document add(Setting setting) {
+        Document document = new Document();
+        documents.put(setting, document);
+        index(document, textOf(setting));
+        return document;
+    }
+
+    private void index(Document document, String text) {
+        document.text = text;
+        Set<Long> grams = gramsOf(text);
+        document.grams = new long[grams.size()];
+        int i = 0;
+        for (Long gram : grams) {
+            document.grams[i++] = gram;
+            Set<Document> posting = postings.get(gram);
+            if (posting == null) {
+                posting = new HashSet<>();
+                postings.put(gram, posting);
+            }
+            posting.add(document);
+        }
+    }
+
+    private void unindex(Document document) {
+        for (long gram : document.grams) {
+            Set<Document> posting = postings.get(gram);
+            if (posting != null) {
+                posting.remove(document);
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private void ensurePositions() {
+        if (positionsValid)
+            return;
+
+        headers = new int[settingList.size()];
+        int header = -1;
+        for (int i = 0; i < settingList.size(); i++) {
+            Setting setting = settingList.get(i);
+            if (setting.getType() == Setting.HEADER) {
+                header = i;
+            }
+            headers[i] = header;
+
+            Document document = documents.get(setting);
+            if (document == null) {
+                // inserted without onInserted
+                document = add(setting);
+            }
+            document.position = i;
+        }
+        positionsValid = true;
+    }
+
+    private Set<Document> smallestPosting(String query) {
+        Set<Document> smallest = null;
+        if (query.length() < GRAM) {
+            smallest = postings.get(PREFIX | gram(query, 0, query.length()));
+        } else {
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                Set<Document> posting = postings.get(gram(query, i, GRAM));
+                if (posting == null)
+                    return null;
+
+                if (smallest == null || posting.size() < smallest.size()) {
+                    smallest = posting;
+                }
+            }
+        }
+        return smallest;
+    }
+
+    // Public Methods
+
+    /**
+     * Index a new list, dropping everything indexed so far.
+     * @param settingList collection of {@link Setting}
+     */
+    void reset(List<Setting> settingList) {
+        this.settingList = settingList;
+        documents.clear();
+        postings.clear();
+        for (Setting setting : settingList) {
+            add(setting);
+        }
+        positionsValid = false;
+    }
+
+    /**
+     * Re-index a setting after its title or value changed.
+     * @param setting {@link Setting} of the indexed list
+     */
+    void onChanged(Setting setting) {
+        Document document = documents.get(setting);
+        if (document == null)
+            return;
+
+        String text = textOf(setting);
+        if (!text.equals(document.text)) {
+            unindex(document);
+            index(document, text);
+        }
+    }
+
+    /**
+     * Index a setting inserted into the indexed list.
+     * @param setting the inserted {@link Setting}
+     */
+    void onInserted(Setting setting) {
+        add(setting);
+        positionsValid = false;
+    }
+
+    /**
+     * Drop a setting removed from the indexed list.
+     * @param setting the removed {@link Setting}
+     */
+    void onRemoved(Setting setting) {
+        Document document = documents.remove(setting);
+        if (document != null) {
+            unindex(document);
+        }
+        positionsValid = false;
+    }
+
+    /**
+     * Find the settings matching a query, case insensitive.
+     * @param query text to look for
+     * @return matching settings in list order, each preceded by the HEADER of its section
+     */
+    List<Setting> filter(String query) {
+        String normalized = normalize(query).trim();
+        if (normalized.isEmpty())
+            return new ArrayList<>(settingList);
+
+        Set<Document> candidates = smallestPosting(normalized);
+        if (candidates == null)
+            return new ArrayList<>();
+
+        ensurePositions();
+        int[] positions = new int[candidates.size()];
+        int count = 0;
+        for (Document document : candidates) {
+            if (normalized.length() < GRAM || document.text.contains(normalized)) {
+                positions[count++] = document.position;
+            }
+        }
+        Arrays.sort(positions, 0, count);
+
+        List<Setting> filtered = new ArrayList<>(count + 8);
+        int lastHeader = -1;
+        for (int i = 0; i < count; i++) {
+            int header = headers[positions[i]];
+            if (header >= 0 && header != lastHeader) {
+                lastHeader = header;
+                if (header != positions[i]) {
+                    filtered.add(settingList.get(header));
+                }
+            }
+            filtered.add(settingList.get(positions[i]));
+        }
+        return filtered;
+    }
+
+    /**
+     * @param query text to look for
+     * @return true if the query filters the list
+     */
+    static boolean isFiltering(String query) {
+        return query != null && !query.trim().isEmpty();
+    }
+
+
+    private static class Document {
+        String text;
+        long[] grams;
+        int position;
+    }
+}
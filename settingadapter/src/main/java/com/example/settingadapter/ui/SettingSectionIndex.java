@@ -0,0 +1,217 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.example.settingadapter.model.Setting;
+
+import java.util.Arrays;
+
+/**
+ * Sorted positions of the HEADER rows of an adapter, kept current from its change notifications.
+ * The section of any position is found by binary search, inserts and removes only shift
+ * the headers after them and scan the changed range.
+ * Rows of a data source whose page is not loaded are never requested by the index.
+ * Diffs dispatched by {@link SettingItemAdapter#setSettingList(java.util.List)} report intermediate
+ * positions while the adapter already holds the new list, so they rebuild the index once instead.
+ */
+class SettingSectionIndex extends RecyclerView.AdapterDataObserver {
+
+    // Private Variables
+    private final SettingItemAdapter adapter;
+    private int[] headers = new int[16];
+    private int headerCount = 0;
+    private boolean dirty = false;
+
+    // Constructors
+
+    SettingSectionIndex(SettingItemAdapter adapter) {
+        this.adapter = adapter;
+        rebuild();
+    }
+
+    // Private Methods
+
+    private void rebuild() {
+        headerCount = 0;
+        dirty = false;
+        scan(0, adapter.getItemCount());
+    }
+
+    /**
+     * @return true if the change is applied by rebuilding later
+     */
+    private boolean deferred() {
+        if (dirty || adapter.isDispatchingDiff()) {
+            dirty = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add the headers found in a range, the range must not contain indexed headers.
+     * Rows of a data source are only read from loaded pages, the headers of other pages
+     * are added when their pages load.
+     */
+    private void scan(int start, int end) {
+        for (int position = adapter.nextLoadedPosition(start, end); position < end;
+             position = adapter.nextLoadedPosition(position + 1, end)) {
+            if (adapter.peekItemViewType(position) == Setting.HEADER) {
+                insertHeader(position);
+            }
+        }
+    }
+
+    private void insertHeader(int position) {
+        int index = lowerBound(position);
+        if (index < headerCount && headers[index] == position)
+            return;
+
+        if (headerCount == headers.length) {
+            headers = Arrays.copyOf(headers, headerCount * 2);
+        }
+        System.arraycopy(headers, index, headers, index + 1, headerCount - index);
+        headers[index] = position;
+        headerCount++;
+    }
+
+    /**
+     * Drop the headers within a range and shift the following ones.
+     */
+    private void removeRange(int start, int end, int shift) {
+        int from = lowerBound(start);
+        int to = lowerBound(end);
+        System.arraycopy(headers, to, headers, from, headerCount - to);
+        headerCount -= to - from;
+        for (int i = from; i < headerCount; i++) {
+            headers[i] += shift;
+        }
+    }
+
+    /**
+     * @return index of the first header at or after the position
+     */
+    private int lowerBound(int position) {
+        int low = 0;
+        int high = headerCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (headers[middle] < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Public Methods
+
+    /**
+     * @param position adapter position
+     * @return position of the HEADER of the section containing the position, or -1 if it is above every header
+     *         or a data source page between the header found and the position is not loaded,
+     *         as that page could hold the actual header
+     */
+    int headerFor(int position) {
+        if (dirty) {
+            rebuild();
+        }
+        int index = lowerBound(position + 1) - 1;
+        if (index < 0)
+            return -1;
+
+        int header = headers[index];
+        return adapter.isRangeLoaded(header + 1, position + 1) ? header : -1;
+    }
+
+    /**
+     * @param position adapter position
+     * @return position of the first HEADER after the position or -1
+     */
+    int nextHeaderAfter(int position) {
+        if (dirty) {
+            rebuild();
+        }
+        int index = lowerBound(position + 1);
+        return index < headerCount ? headers[index] : -1;
+    }
+
+    /**
+     * @param ordinal number of headers above the header
+     * @return position of the header or -1 if there are not that many headers
+     */
+    int headerAt(int ordinal) {
+        if (dirty) {
+            rebuild();
+        }
+        return ordinal >= 0 && ordinal < headerCount ? headers[ordinal] : -1;
+    }
+
+    @Override
+    public void onChanged() {
+        dirty = true;
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        if (deferred())
+            return;
+
+        // rows can change type, e.g. placeholders replaced by loaded settings
+        removeRange(positionStart, positionStart + itemCount, 0);
+        scan(positionStart, positionStart + itemCount);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        if (deferred())
+            return;
+
+        int index = lowerBound(positionStart);
+        for (int i = index; i < headerCount; i++) {
+            headers[i] += itemCount;
+        }
+        scan(positionStart, positionStart + itemCount);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (deferred())
+            return;
+
+        removeRange(positionStart, positionStart + itemCount, -itemCount);
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (deferred())
+            return;
+
+        onItemRangeRemoved(fromPosition, itemCount);
+        onItemRangeInserted(toPosition, itemCount);
+    }
+}
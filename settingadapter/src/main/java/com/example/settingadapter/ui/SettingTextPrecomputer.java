@@ -0,0 +1,154 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Measures and ellipsizes the text of {@link SettingRowView} rows on a background thread,
+ * so rows about to scroll into view can be bound without measuring on the main thread.
+ * Results are kept per item id in a small LRU cache and only used while their text and width
+ * still match the row being bound.
+ */
+class SettingTextPrecomputer {
+
+    // Constants
+    private static final String TAG = "SettingTextPrecomputer";
+    private static final int CACHE_SIZE = 64;
+
+    // Private Variables
+    private final SettingRowView measuringView;
+    private final ExecutorService executor;
+    private final Map<Long, SettingRowLayout> layouts = new LinkedHashMap<Long, SettingRowLayout>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SettingRowLayout> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final Set<Long> pending = new HashSet<>();
+    private volatile int width = 0;
+
+    // Constructors
+
+    /**
+     * Must be called on the main thread.
+     * @param context context of the rows, for their text sizes
+     */
+    SettingTextPrecomputer(@NonNull Context context) {
+        // never drawn, its paints are only used by the executor thread
+        this.measuringView = new SettingRowView(context);
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    // Public Methods
+
+    /**
+     * @param width width of the rows, layouts for other widths are dropped when bound
+     */
+    void setWidth(int width) {
+        this.width = width;
+    }
+
+    /**
+     * Measure a row in the background unless a matching layout is cached or already being computed.
+     * @param id {@link SettingItemAdapter#getItemId(int)}
+     * @param title text drawn on the start side
+     * @param value text drawn on the end side
+     */
+    void precompute(final long id, CharSequence title, CharSequence value) {
+        final int rowWidth = width;
+        if (rowWidth <= 0)
+            return;
+
+        final CharSequence rowTitle = title == null ? "" : title;
+        final CharSequence rowValue = value == null ? "" : value;
+
+        synchronized (layouts) {
+            SettingRowLayout layout = layouts.get(id);
+            if ((layout != null && layout.matches(rowTitle, rowValue, rowWidth)) || !pending.add(id))
+                return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SettingRowLayout layout = measuringView.computeLayout(rowTitle, rowValue, rowWidth);
+                synchronized (layouts) {
+                    pending.remove(id);
+                    layouts.put(id, layout);
+                }
+            }
+        });
+    }
+
+    /**
+     * @param id {@link SettingItemAdapter#getItemId(int)}
+     * @param title text drawn on the start side
+     * @param value text drawn on the end side
+     * @param width width of the row being bound
+     * @return the precomputed layout or null if none is ready for this text and width
+     */
+    SettingRowLayout get(long id, CharSequence title, CharSequence value, int width) {
+        synchronized (layouts) {
+            SettingRowLayout layout = layouts.get(id);
+            if (layout != null && layout.matches(title == null ? "" : title, value == null ? "" : value, width))
+                return layout;
+
+            return null;
+        }
+    }
+
+    /**
+     * Drop all cached layouts, e.g. after the text size changed.
+     */
+    void clear() {
+        synchronized (layouts) {
+            layouts.clear();
+        }
+    }
+
+    /**
+     * Stop the background thread, pending work is discarded.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
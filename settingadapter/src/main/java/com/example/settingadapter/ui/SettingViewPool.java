@@ -0,0 +1,166 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.example.settingadapter.model.Setting;
+
+import java.util.ArrayDeque;
+
+/**
+ * Recycled view pool for setting rows, sized per setting type in both render modes.
+ * Rows can be pre-inflated on a background thread with {@link #prewarm(Context, ViewGroup, int, int)};
+ * {@link SettingItemAdapter} takes those views before inflating new ones.
+ * One pool can be shared by several {@link SettingItemFragment}s of the same activity.
+ */
+public class SettingViewPool extends RecyclerView.RecycledViewPool {
+
+    // Constants
+    private static final int DEFAULT_POOL_SIZE = 5;
+
+    // Private Variables
+    private final SparseIntArray poolSizes = new SparseIntArray();
+    private final SparseArray<ArrayDeque<View>> prewarmed = new SparseArray<>();
+    private final SparseIntArray pending = new SparseIntArray();
+    private AsyncLayoutInflater asyncInflater;
+
+    // Constructors
+
+    public SettingViewPool() {
+    }
+
+    // Private Methods
+
+    private ArrayDeque<View> prewarmedViews(int viewType) {
+        ArrayDeque<View> views = prewarmed.get(viewType);
+        if (views == null) {
+            views = new ArrayDeque<>();
+            prewarmed.put(viewType, views);
+        }
+        return views;
+    }
+
+    // Public Methods
+
+    /**
+     * Set how many holders of a setting type are kept for reuse, for rows of either render mode.
+     * @param type {@link Setting#getType()}
+     * @param size maximum recycled holders, also caps pre-inflated views
+     */
+    public void setPoolSize(int type, int size) {
+        poolSizes.put(type, size);
+        setMaxRecycledViews(type, size);
+        int flatViewType = SettingItemAdapter.viewTypeFor(type, SettingItemAdapter.RENDER_FLAT);
+        if (flatViewType != type) {
+            setMaxRecycledViews(flatViewType, size);
+        }
+    }
+
+    /**
+     * @param viewType {@link Setting#getType()} or a view type of {@link SettingItemAdapter}
+     * @return maximum recycled holders of the view type
+     */
+    public int getPoolSize(int viewType) {
+        return poolSizes.get(SettingItemAdapter.settingType(viewType), DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Inflate rows of a view type off the main thread so the first layout does not have to.
+     * Must be called on the main thread, views are handed over on the main thread as well.
+     * @param context context of the activity the rows will be shown in
+     * @param parent view the rows will be added to, used for their layout params
+     * @param viewType {@link Setting#getType()}
+     * @param count number of rows to inflate, capped by {@link #getPoolSize(int)}
+     */
+    public void prewarm(@NonNull Context context, @Nullable ViewGroup parent, final int viewType, int count) {
+        int layout = SettingItemAdapter.layoutFor(viewType);
+        if (layout == 0)
+            return;
+
+        if (asyncInflater == null) {
+            asyncInflater = new AsyncLayoutInflater(context);
+        }
+
+        int missing = Math.min(count, getPoolSize(viewType))
+                - prewarmedViews(viewType).size() - pending.get(viewType);
+        for (int i = 0; i < missing; i++) {
+            pending.put(viewType, pending.get(viewType) + 1);
+            asyncInflater.inflate(layout, parent, new AsyncLayoutInflater.OnInflateFinishedListener() {
+                @Override
+                public void onInflateFinished(@NonNull View view, int resid, @Nullable ViewGroup parent) {
+                    pending.put(viewType, pending.get(viewType) - 1);
+                    if (view.getLayoutParams() == null) {
+                        view.setLayoutParams(new RecyclerView.LayoutParams(
+                                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+                    }
+                    prewarmedViews(viewType).add(view);
+                }
+            });
+        }
+    }
+
+    /**
+     * Inflate rows of every view type inflated in a render mode, see {@link #prewarm(Context, ViewGroup, int, int)}.
+     * Flat rows are created in code without inflating, so their setting types are skipped in flat mode.
+     * @param context context of the activity the rows will be shown in
+     * @param parent view the rows will be added to, used for their layout params
+     * @param countPerType number of rows to inflate per view type
+     * @param renderMode {@link SettingItemAdapter#RENDER_XML} or {@link SettingItemAdapter#RENDER_FLAT}
+     */
+    public void prewarmAll(@NonNull Context context, @Nullable ViewGroup parent, int countPerType, int renderMode) {
+        for (int type = Setting.HEADER; type <= Setting.FOOTER; type++) {
+            if (SettingItemAdapter.viewTypeFor(type, renderMode) == type) {
+                prewarm(context, parent, type, countPerType);
+            }
+        }
+    }
+
+    /**
+     * Take a pre-inflated row.
+     * @param viewType {@link Setting#getType()}
+     * @return the view or null if none is ready
+     */
+    View takePrewarmedView(int viewType) {
+        ArrayDeque<View> views = prewarmed.get(viewType);
+        if (views == null)
+            return null;
+
+        return views.poll();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        prewarmed.clear();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.graphics.Canvas;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.example.settingadapter.R;
+import com.example.settingadapter.model.Setting;
+
+/**
+ * Item decoration pinning the HEADER of the topmost section to the top of the recycler view.
+ * The next header pushes the pinned one up as it scrolls in.
+ * Sections are looked up in a {@link SettingSectionIndex} kept current from the adapter's notifications.
+ */
+public class StickyHeaderItem extends RecyclerView.ItemDecoration {
+
+    // Constants
+    private static final int DEFAULT_BACKGROUND = 0xFFFAFAFA;
+
+    // Private Variables
+    private final SettingItemAdapter adapter;
+    private final SettingSectionIndex sectionIndex;
+    private int backgroundColor = DEFAULT_BACKGROUND;
+
+    private View headerView;
+    private TextView headerTitle;
+    private String boundTitle;
+    private int measuredWidth = -1;
+
+    // Constructors
+
+    /**
+     * @param adapter adapter of the recycler view the decoration is added to
+     */
+    public StickyHeaderItem(SettingItemAdapter adapter) {
+        this.adapter = adapter;
+        this.sectionIndex = new SettingSectionIndex(adapter);
+        adapter.registerAdapterDataObserver(sectionIndex);
+    }
+
+    // Private Methods
+
+    private void bindHeader(RecyclerView parent, Setting header) {
+        if (headerView == null) {
+            headerView = LayoutInflater.from(parent.getContext()).inflate(R.layout.recycler_item_setting_header, parent, false);
+            headerView.setBackgroundColor(backgroundColor);
+            headerTitle = (TextView) headerView.findViewById(R.id.recycler_setting_simple_title);
+        }
+
+        String title = header.getTitle();
+        boolean rebound = title == null ? boundTitle != null : !title.equals(boundTitle);
+        if (rebound) {
+            boundTitle = title;
+            if (headerTitle != null) {
+                headerTitle.setText(title);
+            }
+        }
+
+        // the header is one line high, so it is only measured again when the width changes
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        if (rebound || width != measuredWidth) {
+            measuredWidth = width;
+            headerView.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+            headerView.layout(0, 0, headerView.getMeasuredWidth(), headerView.getMeasuredHeight());
+        }
+    }
+
+    // Public Methods
+
+    /**
+     * @param color color drawn behind the pinned header, so rows do not show through it
+     */
+    public void setBackgroundColor(int color) {
+        this.backgroundColor = color;
+        if (headerView != null) {
+            headerView.setBackgroundColor(color);
+        }
+    }
+
+    /**
+     * Stop following the adapter, call after removing the decoration.
+     */
+    public void release() {
+        adapter.unregisterAdapterDataObserver(sectionIndex);
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        if (parent.getChildCount() == 0)
+            return;
+
+        int topPosition = parent.getChildAdapterPosition(parent.getChildAt(0));
+        if (topPosition == RecyclerView.NO_POSITION)
+            return;
+
+        int headerPosition = sectionIndex.headerFor(topPosition);
+        Setting header = headerPosition < 0 ? null : adapter.getSettingAt(headerPosition);
+        if (header == null)
+            return;
+
+        bindHeader(parent, header);
+        int headerHeight = headerView.getHeight();
+
+        // push the pinned header up while the next one scrolls into its place
+        int offset = 0;
+        int nextPosition = sectionIndex.nextHeaderAfter(topPosition);
+        RecyclerView.ViewHolder next = nextPosition < 0 ? null : parent.findViewHolderForAdapterPosition(nextPosition);
+        if (next != null && next.itemView.getTop() < headerHeight) {
+            offset = next.itemView.getTop() - headerHeight;
+        }
+
+        int save = c.save();
+        c.translate(parent.getPaddingLeft(), offset);
+        headerView.draw(c);
+        c.restoreToCount(save);
+    }
+}
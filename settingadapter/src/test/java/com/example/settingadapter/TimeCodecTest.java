@@ -0,0 +1,116 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter;
+
+import com.example.settingadapter.model.Setting;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Packing, parsing and formatting of {@link TimeCodec}.
+ */
+public class TimeCodecTest {
+
+    @Test
+    public void packsAndUnpacks() throws Exception {
+        int time = TimeCodec.pack(15, 30);
+
+        assertEquals(15 * 60 + 30, time);
+        assertEquals(15, TimeCodec.hour(time));
+        assertEquals(30, TimeCodec.minute(time));
+    }
+
+    @Test
+    public void rejectsOutOfRangeFields() throws Exception {
+        assertEquals(TimeCodec.INVALID, TimeCodec.pack(24, 0));
+        assertEquals(TimeCodec.INVALID, TimeCodec.pack(-1, 0));
+        assertEquals(TimeCodec.INVALID, TimeCodec.pack(12, 60));
+        assertEquals(TimeCodec.INVALID, TimeCodec.pack(12, -1));
+    }
+
+    @Test
+    public void parsesStoredValues() throws Exception {
+        assertEquals(TimeCodec.pack(15, 30), TimeCodec.parse("15:30"));
+        assertEquals(TimeCodec.pack(7, 5), TimeCodec.parse("7:5"));
+        assertEquals(TimeCodec.pack(0, 0), TimeCodec.parse("00:00"));
+    }
+
+    @Test
+    public void rejectsMalformedValues() throws Exception {
+        String[] malformed = {null, "", ":", "15", "15:", ":30", "1a:30", "15:3b", "123:00", "15:300", "24:00", "15:30:00"};
+        for (String value : malformed) {
+            assertEquals(String.valueOf(value), TimeCodec.INVALID, TimeCodec.parse(value));
+        }
+    }
+
+    @Test
+    public void parseOrNowPrefersTheValue() throws Exception {
+        assertEquals(TimeCodec.pack(15, 30), TimeCodec.parseOrNow("15:30"));
+
+        int now = TimeCodec.parseOrNow(null);
+        assertTrue(now >= 0 && now < TimeCodec.MINUTES_PER_DAY);
+    }
+
+    @Test
+    public void formatsAndDisplays() throws Exception {
+        assertEquals("15:30", TimeCodec.format(TimeCodec.pack(15, 30)));
+        assertEquals("07:05", TimeCodec.format(TimeCodec.pack(7, 5)));
+        assertEquals("03:30 PM", TimeCodec.display(TimeCodec.pack(15, 30)));
+        assertEquals("12:00 AM", TimeCodec.display(TimeCodec.pack(0, 0)));
+        assertEquals("12:15 PM", TimeCodec.display(TimeCodec.pack(12, 15)));
+    }
+
+    @Test
+    public void formattedStringsAreCached() throws Exception {
+        int time = TimeCodec.pack(9, 41);
+
+        assertSame(TimeCodec.format(time), TimeCodec.format(time));
+        assertSame(TimeCodec.display(time), TimeCodec.display(time));
+    }
+
+    @Test
+    public void invalidTimesFormatEmpty() throws Exception {
+        assertEquals("", TimeCodec.format(TimeCodec.INVALID));
+        assertEquals("", TimeCodec.display(TimeCodec.INVALID));
+        assertEquals("", TimeCodec.format(TimeCodec.MINUTES_PER_DAY));
+        assertEquals("", TimeCodec.display(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void settingsWithInvalidTimesReadEmpty() throws Exception {
+        Setting setting = new Setting(Setting.TIME, "TIME", "Time", "", new ArrayList<String>());
+        assertEquals(TimeCodec.INVALID, setting.getTime());
+
+        setting.setTime(TimeCodec.pack(25, 0));
+        assertEquals("", setting.getValue());
+
+        setting.setTime(TimeCodec.pack(8, 0));
+        assertEquals("08:00", setting.getValue());
+        assertEquals(TimeCodec.pack(8, 0), setting.getTime());
+    }
+}
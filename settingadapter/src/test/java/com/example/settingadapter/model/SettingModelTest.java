@@ -0,0 +1,171 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copy-on-write snapshots and publishing of {@link SettingModel}.
+ */
+public class SettingModelTest {
+
+    private static final int KEYS = 70;
+
+    private List<Setting> settingList;
+    private SettingModel model;
+
+    private static String key(int i) {
+        return "KEY_" + i;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        settingList = new ArrayList<>();
+        settingList.add(new Setting(Setting.HEADER, null, "Header", "", new ArrayList<String>()));
+        for (int i = 0; i < KEYS; i++) {
+            settingList.add(new Setting(Setting.INPUT, key(i), "Title " + i, "value " + i, new ArrayList<String>()));
+        }
+        settingList.add(new Setting(Setting.INPUT, key(0), "Duplicate", "duplicate", new ArrayList<String>()));
+        model = new SettingModel(settingList);
+    }
+
+    @Test
+    public void startsWithKeyedValues() throws Exception {
+        SettingModel.Snapshot snapshot = model.snapshot();
+
+        assertEquals(0, snapshot.getVersion());
+        assertEquals(KEYS, snapshot.size());
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(key(i), snapshot.getKey(i));
+            assertEquals("value " + i, snapshot.getValue(i));
+            assertEquals("value " + i, snapshot.getValue(key(i)));
+        }
+        assertNull(snapshot.getValue("MISSING"));
+    }
+
+    @Test
+    public void publishLeavesOlderSnapshotsUnchanged() throws Exception {
+        SettingModel.Snapshot before = model.snapshot();
+
+        assertTrue(model.publish(key(40), "changed"));
+        SettingModel.Snapshot after = model.snapshot();
+
+        assertEquals(1, after.getVersion());
+        assertEquals("changed", after.getValue(key(40)));
+        assertEquals("value 40", before.getValue(key(40)));
+        assertEquals(0, before.getVersion());
+    }
+
+    @Test
+    public void unknownKeysAndSameValuesAreIgnored() throws Exception {
+        assertFalse(model.publish("MISSING", "value"));
+        assertEquals(-1, model.publish(Collections.singletonMap(key(3), "value 3")));
+        assertEquals(0, model.snapshot().getVersion());
+    }
+
+    @Test
+    public void batchPublishIsOneVersion() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put(key(1), "a");
+        values.put(key(65), "b");
+        values.put("MISSING", "c");
+
+        assertEquals(1, model.publish(values));
+        assertEquals("a", model.snapshot().getValue(key(1)));
+        assertEquals("b", model.snapshot().getValue(key(65)));
+    }
+
+    @Test
+    public void changedSinceFindsChangedPositions() throws Exception {
+        SettingModel.Snapshot first = model.snapshot();
+        model.publish(key(2), "a");
+        SettingModel.Snapshot second = model.snapshot();
+        model.publish(key(66), "b");
+        model.publish(key(2), "value 2");
+        SettingModel.Snapshot third = model.snapshot();
+
+        assertArrayEquals(new int[]{2}, second.changedSince(first));
+        assertArrayEquals(new int[]{66}, third.changedSince(first));
+        assertArrayEquals(new int[]{2, 66}, third.changedSince(second));
+        assertArrayEquals(new int[0], third.changedSince(third));
+        assertEquals(KEYS, third.changedSince(null).length);
+    }
+
+    @Test
+    public void listenersSeeEveryPublish() throws Exception {
+        final List<Long> versions = new ArrayList<>();
+        SettingModel.Listener listener = new SettingModel.Listener() {
+            @Override
+            public void onPublished(SettingModel.Snapshot snapshot) {
+                versions.add(snapshot.getVersion());
+            }
+        };
+        model.addListener(listener);
+        model.publish(key(0), "a");
+        model.publish(key(0), "a");
+        model.publish(key(1), "b");
+        model.removeListener(listener);
+        model.publish(key(2), "c");
+
+        assertEquals(2, versions.size());
+        assertEquals(1L, (long) versions.get(0));
+        assertEquals(2L, (long) versions.get(1));
+    }
+
+    @Test
+    public void concurrentPublishesAreAllApplied() throws Exception {
+        final int perThread = 200;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        model.publish(key(thread), thread + ":" + i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        SettingModel.Snapshot snapshot = model.snapshot();
+        assertEquals(threads.length * perThread, snapshot.getVersion());
+        for (int t = 0; t < threads.length; t++) {
+            assertEquals(t + ":" + (perThread - 1), snapshot.getValue(key(t)));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.store;
+
+import com.example.settingadapter.model.OptionTable;
+import com.example.settingadapter.model.Setting;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writing, mapping and validating {@link SettingSnapshot} files.
+ */
+public class SettingSnapshotTest {
+
+    private File file;
+    private OptionTable days;
+    private List<Setting> settingList;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("snapshot", ".bin");
+        days = OptionTable.of("Sunday", "Monday");
+
+        settingList = new ArrayList<>();
+        settingList.add(new Setting(Setting.HEADER, null, "G\u00e9n\u00e9ral", "", new ArrayList<String>()));
+        settingList.add(new Setting(Setting.SWITCH, "SWITCH", "Switch", "1", new ArrayList<String>()));
+        settingList.add(new Setting(Setting.LIST, "DAY", "Day", "Monday", days));
+        settingList.add(new Setting(Setting.LIST, "OTHER_DAY", "Other day", "Sunday", days));
+        settingList.add(new Setting(Setting.LIST, "OWN", "Own options", "b", new ArrayList<>(Arrays.asList("a", "b"))));
+        settingList.add(new Setting(Setting.TIME, "TIME", "Time", "15:30", new ArrayList<String>()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        assertTrue(!file.exists() || file.delete());
+    }
+
+    private void corrupt(long position) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(position);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(position);
+            randomAccessFile.write(value ^ 0xff);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    @Test
+    public void roundTripsEveryField() throws Exception {
+        SettingSnapshot.write(file, settingList);
+        SettingSnapshot snapshot = SettingSnapshot.open(file);
+
+        assertNotNull(snapshot);
+        assertEquals(settingList.size(), snapshot.size());
+        for (int i = 0; i < settingList.size(); i++) {
+            Setting expected = settingList.get(i);
+            Setting actual = snapshot.get(i);
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getKey(), actual.getKey());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getValue(), actual.getValue());
+            assertEquals(expected.getOptions(), actual.getOptions());
+        }
+    }
+
+    @Test
+    public void sharedOptionsAreInternedAgain() throws Exception {
+        SettingSnapshot.write(file, settingList);
+        SettingSnapshot snapshot = SettingSnapshot.open(file);
+
+        assertSame(days, snapshot.get(2).getOptionTable());
+        assertSame(days, snapshot.get(3).getOptionTable());
+        assertNull(snapshot.get(4).getOptionTable());
+        snapshot.get(4).getOptions().add("c");
+    }
+
+    @Test
+    public void rowsAreDecodedOnce() throws Exception {
+        SettingSnapshot.write(file, settingList);
+        SettingSnapshot snapshot = SettingSnapshot.open(file);
+
+        assertSame(snapshot.get(1), snapshot.get(1));
+        assertNotSame(snapshot.get(1), snapshot.load(1));
+        assertSame(snapshot, SettingSnapshot.backing(snapshot.asList()));
+        assertNull(SettingSnapshot.backing(settingList));
+    }
+
+    @Test
+    public void findsKeys() throws Exception {
+        SettingSnapshot.write(file, settingList);
+        SettingSnapshot snapshot = SettingSnapshot.open(file);
+
+        assertEquals(5, snapshot.positionOf("TIME"));
+        snapshot.get(5);
+        assertEquals(5, snapshot.positionOf("TIME"));
+        assertEquals(-1, snapshot.positionOf("MISSING"));
+        assertEquals(-1, snapshot.positionOf(null));
+    }
+
+    @Test
+    public void rejectsChecksumMismatch() throws Exception {
+        SettingSnapshot.write(file, settingList);
+        corrupt(file.length() - 1);
+
+        assertNull(SettingSnapshot.open(file));
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws Exception {
+        assertTrue(file.delete());
+        assertNull(SettingSnapshot.open(file));
+
+        assertTrue(file.createNewFile());
+        assertNull(SettingSnapshot.open(file));
+
+        SettingSnapshot.write(file, settingList);
+        corrupt(0);
+        assertNull(SettingSnapshot.open(file));
+    }
+
+    @Test
+    public void readRebuildsCorruptSnapshots() throws Exception {
+        SettingSnapshot.write(file, settingList);
+        corrupt(file.length() - 1);
+        final int[] loads = new int[1];
+        SettingSnapshot.Loader loader = new SettingSnapshot.Loader() {
+            @Override
+            public List<Setting> load() {
+                loads[0]++;
+                return settingList;
+            }
+        };
+
+        List<Setting> rebuilt = SettingSnapshot.read(file, loader);
+        List<Setting> mapped = SettingSnapshot.read(file, loader);
+
+        assertEquals(1, loads[0]);
+        assertNotNull(SettingSnapshot.backing(rebuilt));
+        assertNotNull(SettingSnapshot.backing(mapped));
+        assertEquals("15:30", mapped.get(5).getValue());
+    }
+}
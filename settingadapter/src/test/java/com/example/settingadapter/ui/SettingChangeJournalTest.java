@@ -0,0 +1,146 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Undo, redo, merging and the ring buffer of {@link SettingChangeJournal}.
+ */
+public class SettingChangeJournalTest {
+
+    /** Every change is recent within this window, whatever the clock returns. */
+    private static final long ALWAYS = Long.MAX_VALUE;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCapacity() throws Exception {
+        new SettingChangeJournal(0);
+    }
+
+    @Test
+    public void undoAndRedoWalkTheChanges() throws Exception {
+        SettingChangeJournal journal = new SettingChangeJournal(SettingChangeJournal.DEFAULT_CAPACITY);
+        assertFalse(journal.canUndo());
+        assertEquals(-1, journal.undo());
+
+        journal.record("A", "0", "1", 0);
+        journal.record("B", "x", "y", 0);
+
+        int slot = journal.undo();
+        assertEquals("B", journal.keyAt(slot));
+        assertEquals("x", journal.oldValueAt(slot));
+        assertEquals("y", journal.newValueAt(slot));
+        slot = journal.undo();
+        assertEquals("A", journal.keyAt(slot));
+        assertFalse(journal.canUndo());
+        assertTrue(journal.canRedo());
+
+        slot = journal.redo();
+        assertEquals("A", journal.keyAt(slot));
+        assertEquals("1", journal.newValueAt(slot));
+        slot = journal.redo();
+        assertEquals("B", journal.keyAt(slot));
+        assertFalse(journal.canRedo());
+        assertEquals(-1, journal.redo());
+    }
+
+    @Test
+    public void recordingDropsTheRedoneChanges() throws Exception {
+        SettingChangeJournal journal = new SettingChangeJournal(4);
+        journal.record("A", "0", "1", 0);
+        journal.record("B", "0", "1", 0);
+        journal.undo();
+        journal.record("C", "0", "1", 0);
+
+        assertFalse(journal.canRedo());
+        assertEquals("C", journal.keyAt(journal.undo()));
+        assertEquals("A", journal.keyAt(journal.undo()));
+        assertFalse(journal.canUndo());
+    }
+
+    @Test
+    public void fullJournalOverwritesTheOldestChange() throws Exception {
+        SettingChangeJournal journal = new SettingChangeJournal(3);
+        for (int i = 0; i < 5; i++) {
+            journal.record("K" + i, String.valueOf(i), String.valueOf(i + 1), 0);
+        }
+
+        assertEquals("K4", journal.keyAt(journal.undo()));
+        assertEquals("K3", journal.keyAt(journal.undo()));
+        assertEquals("K2", journal.keyAt(journal.undo()));
+        assertFalse(journal.canUndo());
+
+        assertEquals("K2", journal.keyAt(journal.redo()));
+        journal.record("K5", "5", "6", 0);
+        assertEquals("K5", journal.keyAt(journal.undo()));
+        assertEquals("K2", journal.keyAt(journal.undo()));
+        assertFalse(journal.canUndo());
+    }
+
+    @Test
+    public void recentChangesOfTheSameKeyAreMerged() throws Exception {
+        SettingChangeJournal journal = new SettingChangeJournal(SettingChangeJournal.DEFAULT_CAPACITY);
+        journal.record("INPUT", "", "a", ALWAYS);
+        journal.record("INPUT", "a", "ab", ALWAYS);
+        journal.record("INPUT", "ab", "abc", ALWAYS);
+
+        int slot = journal.undo();
+        assertEquals("", journal.oldValueAt(slot));
+        assertEquals("abc", journal.newValueAt(slot));
+        assertFalse(journal.canUndo());
+    }
+
+    @Test
+    public void changesAreNotMergedAcrossKeysOrUndos() throws Exception {
+        SettingChangeJournal journal = new SettingChangeJournal(SettingChangeJournal.DEFAULT_CAPACITY);
+        journal.record("A", "", "a", ALWAYS);
+        journal.record("B", "", "b", ALWAYS);
+        journal.record("B", "b", "bb", 0);
+
+        assertEquals("bb", journal.newValueAt(journal.undo()));
+        journal.record("B", "b", "bc", ALWAYS);
+        assertEquals("b", journal.oldValueAt(journal.undo()));
+        assertEquals("b", journal.newValueAt(journal.undo()));
+        assertEquals("A", journal.keyAt(journal.undo()));
+        assertFalse(journal.canUndo());
+    }
+
+    @Test
+    public void clearForgetsEveryChange() throws Exception {
+        SettingChangeJournal journal = new SettingChangeJournal(2);
+        journal.record("A", "0", "1", 0);
+        journal.record("B", "0", "1", 0);
+        journal.record("C", "0", "1", 0);
+        journal.undo();
+        journal.clear();
+
+        assertFalse(journal.canUndo());
+        assertFalse(journal.canRedo());
+        journal.record("D", "0", "1", ALWAYS);
+        assertEquals("D", journal.keyAt(journal.undo()));
+        assertFalse(journal.canUndo());
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import com.example.settingadapter.model.Setting;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Splicing rows into and out of a {@link SettingDiffCallback.Snapshot}.
+ */
+public class SettingDiffSnapshotTest {
+
+    private static Setting setting(int type, String key, String title) {
+        return new Setting(type, key, title, "", new ArrayList<String>());
+    }
+
+    private static void assertDistinctIds(SettingDiffCallback.Snapshot snapshot) {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertTrue("duplicate id at " + i, ids.add(snapshot.ids[i]));
+        }
+    }
+
+    @Test
+    public void insertedRowsKeepExistingIds() throws Exception {
+        List<Setting> settingList = Arrays.asList(
+                setting(Setting.HEADER, null, "Section"),
+                setting(Setting.SWITCH, "a", "A"),
+                setting(Setting.SWITCH, "b", "B"));
+        SettingDiffCallback.Snapshot snapshot = SettingDiffCallback.Snapshot.of(settingList);
+        long[] before = Arrays.copyOf(snapshot.ids, snapshot.size());
+
+        snapshot.insert(1, Arrays.asList(setting(Setting.INPUT, "c", "C"), setting(Setting.INPUT, "d", "D")));
+
+        assertEquals(5, snapshot.size());
+        assertEquals(before[0], snapshot.ids[0]);
+        assertEquals(before[1], snapshot.ids[3]);
+        assertEquals(before[2], snapshot.ids[4]);
+        assertEquals(SettingIds.forKey("c"), snapshot.ids[1]);
+        assertEquals("d", snapshot.keys[2]);
+        assertDistinctIds(snapshot);
+    }
+
+    @Test
+    public void insertedCollisionsAreProbed() throws Exception {
+        List<Setting> settingList = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            settingList.add(setting(Setting.HEADER, null, "Section"));
+        }
+        SettingDiffCallback.Snapshot snapshot = SettingDiffCallback.Snapshot.of(settingList);
+
+        List<Setting> inserted = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            inserted.add(setting(Setting.HEADER, null, "Section"));
+            inserted.add(setting(Setting.SWITCH, "key", "Duplicate key"));
+        }
+        snapshot.insert(25, inserted);
+
+        assertEquals(150, snapshot.size());
+        assertDistinctIds(snapshot);
+    }
+
+    @Test
+    public void removeCutsRows() throws Exception {
+        List<Setting> settingList = Arrays.asList(
+                setting(Setting.SWITCH, "a", "A"),
+                setting(Setting.SWITCH, "b", "B"),
+                setting(Setting.SWITCH, "c", "C"),
+                setting(Setting.SWITCH, "d", "D"));
+        SettingDiffCallback.Snapshot snapshot = SettingDiffCallback.Snapshot.of(settingList);
+
+        snapshot.remove(1, 2);
+
+        assertEquals(2, snapshot.size());
+        assertEquals("a", snapshot.keys[0]);
+        assertEquals("d", snapshot.keys[1]);
+        assertEquals(SettingIds.forKey("d"), snapshot.ids[1]);
+        assertNull(snapshot.keys[2]);
+    }
+}
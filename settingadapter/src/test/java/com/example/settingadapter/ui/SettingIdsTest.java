@@ -0,0 +1,102 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.example.settingadapter.model.Setting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stable ids and collision probing of {@link SettingIds}.
+ */
+public class SettingIdsTest {
+
+    private static long[] assign(int[] types, String[] keys, String[] titles) {
+        long[] ids = new long[types.length];
+        SettingIds.assign(types, keys, titles, ids);
+        return ids;
+    }
+
+    @Test
+    public void keyedIdsDependOnTheKeyOnly() throws Exception {
+        long[] first = assign(new int[]{Setting.SWITCH, Setting.LIST},
+                new String[]{"a", "b"}, new String[]{"A", "B"});
+        long[] moved = assign(new int[]{Setting.LIST, Setting.INPUT},
+                new String[]{"b", "a"}, new String[]{"Other", "Titles"});
+
+        assertEquals(first[0], moved[1]);
+        assertEquals(first[1], moved[0]);
+        assertEquals(SettingIds.forKey("a"), first[0]);
+        assertNotEquals(first[0], first[1]);
+    }
+
+    @Test
+    public void identicalKeylessRowsAreCountedApart() throws Exception {
+        long[] ids = assign(new int[]{Setting.HEADER, Setting.FOOTER, Setting.HEADER},
+                new String[]{null, "", null}, new String[]{"Section", "Section", "Section"});
+
+        assertEquals(SettingIds.forKeyless(Setting.HEADER, "Section", 0), ids[0]);
+        assertEquals(SettingIds.forKeyless(Setting.FOOTER, "Section", 0), ids[1]);
+        assertEquals(SettingIds.forKeyless(Setting.HEADER, "Section", 1), ids[2]);
+        assertNotEquals(ids[0], ids[1]);
+        assertNotEquals(ids[0], ids[2]);
+    }
+
+    @Test
+    public void collidingIdsAreProbed() throws Exception {
+        long[] ids = assign(new int[]{Setting.SWITCH, Setting.SWITCH, Setting.SWITCH},
+                new String[]{"same", "same", "same"}, new String[]{"", "", ""});
+
+        long id = SettingIds.forKey("same");
+        assertEquals(id, ids[0]);
+        assertEquals(SettingIds.next(id), ids[1]);
+        assertEquals(SettingIds.next(SettingIds.next(id)), ids[2]);
+    }
+
+    @Test
+    public void probingSkipsNoId() throws Exception {
+        assertEquals(0, SettingIds.next(RecyclerView.NO_ID - 1));
+
+        SettingIds.IdSet set = new SettingIds.IdSet(2);
+        assertEquals(RecyclerView.NO_ID - 1, set.addUnique(RecyclerView.NO_ID - 1));
+        assertEquals(0, set.addUnique(RecyclerView.NO_ID - 1));
+    }
+
+    @Test
+    public void idSetRejectsDuplicates() throws Exception {
+        SettingIds.IdSet set = new SettingIds.IdSet(100);
+        for (long id = 0; id < 100; id++) {
+            assertTrue(set.add(id * 31));
+        }
+        for (long id = 0; id < 100; id++) {
+            assertFalse(set.add(id * 31));
+        }
+        assertEquals(100 * 31, set.addUnique(99 * 31 + 31));
+        assertEquals(1, set.addUnique(0));
+    }
+}
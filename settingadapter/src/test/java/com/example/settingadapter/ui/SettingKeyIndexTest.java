@@ -0,0 +1,148 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import com.example.settingadapter.model.Setting;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lookups and the shift log of {@link SettingKeyIndex}.
+ */
+public class SettingKeyIndexTest {
+
+    private List<Setting> settingList;
+    private SettingKeyIndex index;
+
+    private static Setting setting(String key) {
+        return new Setting(Setting.SWITCH, key, key, "", new ArrayList<String>());
+    }
+
+    private void insert(int position, String... keys) {
+        List<Setting> inserted = new ArrayList<>();
+        for (String key : keys) {
+            inserted.add(setting(key));
+        }
+        settingList.addAll(position, inserted);
+        index.onInserted(position, inserted);
+    }
+
+    private void remove(int position, int count) {
+        List<Setting> removed = settingList.subList(position, position + count);
+        index.onRemoved(position, new ArrayList<>(removed));
+        removed.clear();
+    }
+
+    private void assertIndexed() {
+        for (int i = 0; i < settingList.size(); i++) {
+            String key = settingList.get(i).getKey();
+            if (key != null && !key.isEmpty()) {
+                assertEquals(key, i, index.positionOf(key));
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        settingList = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            settingList.add(setting("key" + i));
+        }
+        settingList.add(new Setting(Setting.HEADER, null, "Header", "", new ArrayList<String>()));
+        index = new SettingKeyIndex(settingList);
+    }
+
+    @Test
+    public void findsKeys() throws Exception {
+        assertIndexed();
+        assertEquals(-1, index.positionOf("missing"));
+        assertEquals(-1, index.positionOf(null));
+    }
+
+    @Test
+    public void insertsShiftLaterPositions() throws Exception {
+        assertIndexed();
+        insert(3, "a", "b");
+        insert(0, "c");
+        insert(settingList.size(), "d");
+
+        assertEquals(4, index.positionOf("a"));
+        assertEquals(0, index.positionOf("c"));
+        assertEquals(6, index.positionOf("key3"));
+        assertIndexed();
+    }
+
+    @Test
+    public void removesShiftLaterPositions() throws Exception {
+        assertIndexed();
+        remove(2, 3);
+
+        assertEquals(-1, index.positionOf("key2"));
+        assertEquals(-1, index.positionOf("key4"));
+        assertEquals(2, index.positionOf("key5"));
+        assertIndexed();
+    }
+
+    @Test
+    public void staysCorrectWhenTheShiftLogIsFull() throws Exception {
+        assertIndexed();
+        for (int i = 0; i < 100; i++) {
+            if (i % 3 == 2) {
+                remove(i % settingList.size(), 1);
+            } else {
+                insert(i % (settingList.size() + 1), "new" + i);
+            }
+            assertIndexed();
+        }
+    }
+
+    @Test
+    public void reindexesAfterUnreportedChanges() throws Exception {
+        assertIndexed();
+        Collections.reverse(settingList);
+
+        assertEquals(settingList.size() - 1, index.positionOf("key0"));
+        assertIndexed();
+    }
+
+    @Test
+    public void resetDropsTheOldList() throws Exception {
+        List<Setting> other = new ArrayList<>();
+        other.add(setting("other"));
+        index.reset(other);
+
+        assertEquals(0, index.positionOf("other"));
+        assertEquals(-1, index.positionOf("key0"));
+
+        index.reset(null);
+        assertEquals(-1, index.positionOf("other"));
+    }
+}
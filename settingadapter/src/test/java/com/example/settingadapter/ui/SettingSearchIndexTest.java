@@ -0,0 +1,139 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017 Michael Stark
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.settingadapter.ui;
+
+import com.example.settingadapter.model.Setting;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Queries and incremental updates of {@link SettingSearchIndex}.
+ */
+public class SettingSearchIndexTest {
+
+    private List<Setting> settingList;
+    private SettingSearchIndex index;
+    private Setting display;
+    private Setting brightness;
+    private Setting darkMode;
+    private Setting sound;
+    private Setting volume;
+
+    private static Setting setting(int type, String key, String title, String value) {
+        return new Setting(type, key, title, value, new ArrayList<String>());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        display = setting(Setting.HEADER, null, "Display", "");
+        brightness = setting(Setting.INPUT, "BRIGHTNESS", "Brightness", "50");
+        darkMode = setting(Setting.SWITCH, "DARK_MODE", "Dark mode", "0");
+        sound = setting(Setting.HEADER, null, "Sound", "");
+        volume = setting(Setting.INPUT, "VOLUME", "Media volume", "80");
+        settingList = new ArrayList<>(Arrays.asList(display, brightness, darkMode, sound, volume));
+        index = new SettingSearchIndex(settingList);
+    }
+
+    @Test
+    public void emptyQueryReturnsWholeList() throws Exception {
+        assertEquals(settingList, index.filter(""));
+        assertEquals(settingList, index.filter("   "));
+        assertNotSame(settingList, index.filter(""));
+        assertFalse(SettingSearchIndex.isFiltering(null));
+        assertFalse(SettingSearchIndex.isFiltering(" "));
+        assertTrue(SettingSearchIndex.isFiltering("a"));
+    }
+
+    @Test
+    public void matchesAreCaseInsensitiveAndPrecededByTheirHeader() throws Exception {
+        assertEquals(Arrays.asList(display, brightness), index.filter("BRIGHT"));
+        assertEquals(Arrays.asList(sound, volume), index.filter("olum"));
+        assertEquals(Arrays.asList(display, darkMode), index.filter("d"));
+    }
+
+    @Test
+    public void matchingHeaderIsNotRepeated() throws Exception {
+        assertEquals(Arrays.asList(display), index.filter("display"));
+        assertEquals(Arrays.asList(sound), index.filter("sound"));
+    }
+
+    @Test
+    public void shortQueriesMatchWordPrefixes() throws Exception {
+        assertEquals(Arrays.asList(display, darkMode, sound, volume), index.filter("m"));
+        assertEquals(Arrays.asList(sound, volume), index.filter("me"));
+        assertEquals(Arrays.asList(display, darkMode), index.filter("mo"));
+        assertTrue(index.filter("od").isEmpty());
+    }
+
+    @Test
+    public void valuesAndKeysAreSearched() throws Exception {
+        assertEquals(Arrays.asList(sound, volume), index.filter("80"));
+        assertEquals(Arrays.asList(display, darkMode), index.filter("dark_"));
+        assertTrue(index.filter("missing").isEmpty());
+    }
+
+    @Test
+    public void changedSettingsAreReindexed() throws Exception {
+        volume.setValue("123");
+        index.onChanged(volume);
+
+        assertTrue(index.filter("80").isEmpty());
+        assertEquals(Arrays.asList(sound, volume), index.filter("123"));
+    }
+
+    @Test
+    public void insertedAndRemovedSettingsUpdateTheIndex() throws Exception {
+        Setting ringtone = setting(Setting.LIST, "RINGTONE", "Ringtone", "Chime");
+        settingList.add(4, ringtone);
+        index.onInserted(ringtone);
+
+        assertEquals(Arrays.asList(sound, ringtone), index.filter("chime"));
+
+        settingList.remove(darkMode);
+        index.onRemoved(darkMode);
+
+        assertTrue(index.filter("dark").isEmpty());
+        assertEquals(Arrays.asList(sound, ringtone), index.filter("r"));
+        assertEquals(Arrays.asList(sound, volume), index.filter("ume"));
+    }
+
+    @Test
+    public void settingsAddedWithoutNoticeAreFound() throws Exception {
+        assertEquals(Arrays.asList(display, brightness), index.filter("bri"));
+
+        Setting vibrate = setting(Setting.SWITCH, "VIBRATE", "Vibrate", "1");
+        settingList.add(vibrate);
+        // positions are rebuilt after the next structural change
+        index.onRemoved(darkMode);
+        settingList.remove(darkMode);
+        assertEquals(Arrays.asList(sound, volume, vibrate), index.filter("v"));
+    }
+}